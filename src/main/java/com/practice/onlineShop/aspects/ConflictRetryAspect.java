@@ -0,0 +1,70 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.services.ProductConflictStatistics;
+import com.practice.onlineShop.vos.ProductVo;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Reia metodele marcate cu @RetryOnConflict cand commit-ul pica pe versiunea produsului.
+// Ruleaza inaintea interceptorului de tranzactii, deci fiecare incercare are tranzactia ei si reciteste produsul.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+
+    private final ProductConflictStatistics productConflictStatistics;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public ConflictRetryAspect(ProductConflictStatistics productConflictStatistics,
+                               @Value("${shop.product.retry.max-attempts:5}") int maxAttempts,
+                               @Value("${shop.product.retry.initial-backoff-ms:10}") long initialBackoffMillis,
+                               @Value("${shop.product.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.productConflictStatistics = productConflictStatistics;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    @Around("@annotation(com.practice.onlineShop.aspects.RetryOnConflict)")
+    public Object retryOnConflict(ProceedingJoinPoint joinPoint) throws Throwable {
+        String productCode = getProductCode(joinPoint.getArgs());
+        for(int attempt = 1; ; attempt++){
+            try {
+                return joinPoint.proceed();
+            } catch (OptimisticLockingFailureException e) {
+                productConflictStatistics.recordConflict(productCode);
+                if(attempt >= maxAttempts){
+                    throw e;
+                }
+                productConflictStatistics.recordRetry(productCode);
+                Thread.sleep(getBackoffMillis(attempt));
+            }
+        }
+    }
+
+    // "full jitter": o valoare aleatoare intre 0 si backoff-ul exponential, ca reincercarile concurente sa nu se ciocneasca din nou
+    private long getBackoffMillis(int attempt) {
+        long exponentialBackoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(exponentialBackoff + 1);
+    }
+
+    private String getProductCode(Object[] args) {
+        if(args.length == 0){
+            return null;
+        }
+        if(args[0] instanceof ProductVo){
+            return ((ProductVo) args[0]).getCode();
+        }
+        return args[0] instanceof String ? (String) args[0] : null;
+    }
+}
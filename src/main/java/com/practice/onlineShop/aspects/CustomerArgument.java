@@ -0,0 +1,62 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.vos.OrderVO;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.ResolvableType;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+// Argumentul din care se ia user-ul unei metode: parametrul customerId, un OrderVO sau o List<OrderVO>.
+// Se rezolva o singura data pentru fiecare metoda (PermissionMatrix, RateLimitAspect).
+final class CustomerArgument {
+    static final int CUSTOMER_ID = 0;
+    static final int ORDER = 1;
+    static final int ORDERS = 2;
+
+    private static final String CUSTOMER_ID_PARAMETER = "customerId";
+
+    private final int index;
+    private final int kind;
+
+    private CustomerArgument(int index, int kind) {
+        this.index = index;
+        this.kind = kind;
+    }
+
+    static CustomerArgument resolve(Method method, ParameterNameDiscoverer parameterNameDiscoverer) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
+        int singleLongIndex = -1;
+        int longParameters = 0;
+        for(int i = 0; i < parameterTypes.length; i++){
+            if(parameterTypes[i] == OrderVO.class){
+                return new CustomerArgument(i, ORDER);
+            }
+            if(List.class.isAssignableFrom(parameterTypes[i])
+                    && ResolvableType.forMethodParameter(method, i).getGeneric(0).resolve() == OrderVO.class){
+                return new CustomerArgument(i, ORDERS);
+            }
+            if(parameterTypes[i] == Long.class){
+                if(parameterNames != null && CUSTOMER_ID_PARAMETER.equals(parameterNames[i])){
+                    return new CustomerArgument(i, CUSTOMER_ID);
+                }
+                singleLongIndex = i;
+                longParameters++;
+            }
+        }
+        // fara nume de parametri (compilare fara -parameters) acceptam doar un singur argument Long
+        if(longParameters == 1){
+            return new CustomerArgument(singleLongIndex, CUSTOMER_ID);
+        }
+        throw new IllegalStateException("Nu gasim customerId, OrderVO sau List<OrderVO> pe " + method);
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getKind() {
+        return kind;
+    }
+}
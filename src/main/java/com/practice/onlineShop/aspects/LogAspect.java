@@ -1,15 +1,25 @@
 package com.practice.onlineShop.aspects;
 
+import com.practice.onlineShop.enums.AuditActions;
+import com.practice.onlineShop.services.AuditJournal;
+import com.practice.onlineShop.vos.OrderVO;
+import com.practice.onlineShop.vos.ProductVo;
+import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.*;
 import org.springframework.stereotype.Component;
 
-import java.util.Date;
+import java.util.List;
 
+// Fiecare operatie de scriere ajunge ca o inregistrare compacta in AuditJournal (fara System.out, fara Date si
+// fara toString pe VO-uri): din ProductVo se pastreaza doar codul, din OrderVO clientul si numarul de produse.
 @Aspect
 @Component
+@RequiredArgsConstructor
 public class LogAspect{
 
+    private final AuditJournal auditJournal;
+
     @Pointcut("execution(* com.practice.onlineShop.controllers.ProductController.addProduct(..))")
     public void addProductPointcut(){
     }
@@ -22,6 +32,10 @@ public class LogAspect{
     public void addStockPointcut(){
     }
 
+    @Pointcut("execution(* com.practice.onlineShop.controllers.ProductController.importProducts(..))")
+    public void importProductsPointcut(){
+    }
+
     @Pointcut("execution(* com.practice.onlineShop.controllers.OrderController.addOrder(..))")
     public void addOrderPointcut(){
     }
@@ -30,6 +44,10 @@ public class LogAspect{
     public void deliverOrderPointcut(){
     }
 
+    @Pointcut("execution(* com.practice.onlineShop.controllers.OrderController.deliverOrders(..))")
+    public void deliverOrdersPointcut(){
+    }
+
     @Pointcut("execution(* com.practice.onlineShop.controllers.OrderController.cancelOrder(..))")
     public void cancelOrderPointcut(){
     }
@@ -38,62 +56,86 @@ public class LogAspect{
     public void returnOrderPointcut(){
     }
 
-
-
-
+    @Pointcut("execution(* com.practice.onlineShop.controllers.OrderController.returnOrders(..))")
+    public void returnOrdersPointcut(){
+    }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.addProductPointcut()")
     public void before(JoinPoint joinPoint){
-        System.out.println("In before aspect" + new Date());
-        System.out.println("ProductVO: " + joinPoint.getArgs()[0]);
-        System.out.println("The customer had id: " + joinPoint.getArgs()[1]);
+        Object[] args = joinPoint.getArgs();
+        auditJournal.record(AuditActions.ADD_PRODUCT, (Long) args[1], null, getProductCode((ProductVo) args[0]), null);
     }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.addStockPointcut()")
     public void beforeAddingStock(JoinPoint joinPoint){
-        System.out.println("In before aspect at " + new Date() + " before adding stock");
-        System.out.println("Product code: " + joinPoint.getArgs()[0]);
-        System.out.println("Quantity: " + joinPoint.getArgs()[1]);
-        System.out.println("The customer had id: " + joinPoint.getArgs()[2]);
+        Object[] args = joinPoint.getArgs();
+        auditJournal.record(AuditActions.ADD_STOCK, (Long) args[2], null, (String) args[0], (Integer) args[1]);
+    }
+
+    @Before("com.practice.onlineShop.aspects.LogAspect.importProductsPointcut()")
+    public void beforeImport(JoinPoint joinPoint){
+        auditJournal.record(AuditActions.IMPORT_PRODUCTS, (Long) joinPoint.getArgs()[0], null, null, null);
     }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.updateProductPointcut()")
     public void beforeUpdate(JoinPoint joinPoint){
-        System.out.println("In before aspect" + new Date() + "for doing an update");
-        System.out.println("ProductVO: " + joinPoint.getArgs()[0]);
-        System.out.println("The customer had id: " + joinPoint.getArgs()[1]);
+        Object[] args = joinPoint.getArgs();
+        auditJournal.record(AuditActions.UPDATE_PRODUCT, (Long) args[1], null, getProductCode((ProductVo) args[0]), null);
     }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.addOrderPointcut()")
     public void beforeAddingAnOrder(JoinPoint joinPoint){
-        System.out.println("In before aspect" + new Date());
-        System.out.println("OrderVO: " + joinPoint.getArgs()[0]);
+        OrderVO orderVO = (OrderVO) joinPoint.getArgs()[0];
+        if(orderVO == null){
+            return;
+        }
+        Long customerId = orderVO.getUserId() == null ? null : orderVO.getUserId().longValue();
+        Integer products = orderVO.getProductIdsToQuantity() == null ? null : orderVO.getProductIdsToQuantity().size();
+        auditJournal.record(AuditActions.ADD_ORDER, customerId, null, null, products);
     }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.deliverOrderPointcut()")
     public void beforeDeliver(JoinPoint joinPoint){
-        System.out.println("In before aspect" + new Date() + "for doing a deliver");
-        System.out.println("Order Id: " + joinPoint.getArgs()[0]);
-        System.out.println("The customer had id: " + joinPoint.getArgs()[1]);
+        recordOrderChange(AuditActions.DELIVER_ORDER, joinPoint.getArgs());
+    }
+
+    @Before("com.practice.onlineShop.aspects.LogAspect.deliverOrdersPointcut()")
+    public void beforeDeliveringOrders(JoinPoint joinPoint){
+        recordOrderChanges(AuditActions.DELIVER_ORDER, joinPoint.getArgs());
     }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.cancelOrderPointcut()")
     public void beforeCancel(JoinPoint joinPoint){
-        System.out.println("In before aspect" + new Date() + "for canceling");
-        System.out.println("Order Id: " + joinPoint.getArgs()[0]);
-        System.out.println("The customer had id: " + joinPoint.getArgs()[1]);
+        recordOrderChange(AuditActions.CANCEL_ORDER, joinPoint.getArgs());
     }
 
     @Before("com.practice.onlineShop.aspects.LogAspect.returnOrderPointcut()")
     public void beforeReturn(JoinPoint joinPoint){
-        System.out.println("In before aspect" + new Date() + "for returning");
-        System.out.println("Order Id: " + joinPoint.getArgs()[0]);
-        System.out.println("The customer had id: " + joinPoint.getArgs()[1]);
+        recordOrderChange(AuditActions.RETURN_ORDER, joinPoint.getArgs());
     }
-    
-    @After("com.practice.onlineShop.aspects.LogAspect.addProductPointcut()")
-    public void after(JoinPoint joinPoint){
-        System.out.println("In after aspect" + new Date());
+
+    @Before("com.practice.onlineShop.aspects.LogAspect.returnOrdersPointcut()")
+    public void beforeReturningOrders(JoinPoint joinPoint){
+        recordOrderChanges(AuditActions.RETURN_ORDER, joinPoint.getArgs());
     }
 
+    private void recordOrderChange(AuditActions action, Object[] args) {
+        Integer orderId = (Integer) args[0];
+        auditJournal.record(action, (Long) args[1], orderId == null ? null : orderId.longValue(), null, null);
+    }
+
+    // cate o inregistrare pentru fiecare comanda din lot, ca la o singura comanda
+    private void recordOrderChanges(AuditActions action, Object[] args) {
+        List<Integer> orderIds = (List<Integer>) args[0];
+        if(orderIds == null){
+            return;
+        }
+        for(Integer orderId : orderIds){
+            auditJournal.record(action, (Long) args[1], orderId == null ? null : orderId.longValue(), null, null);
+        }
+    }
+
+    private String getProductCode(ProductVo productVo) {
+        return productVo == null ? null : productVo.getCode();
+    }
 }
@@ -0,0 +1,86 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.enums.Roles;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Regulile @RequiresRole, calculate o singura data pentru fiecare metoda, cand bean-ul este creat:
+// masca rolurilor cerute si pozitia argumentului din care se ia user-ul. SecurityAspect doar citeste regula,
+// fara reflexie si fara sa caute argumentul la fiecare apel. O adnotare care nu se poate rezolva opreste pornirea.
+@Component
+public class PermissionMatrix implements BeanPostProcessor {
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final Map<Method, PermissionRule> rulesByMethod = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        ReflectionUtils.doWithMethods(ClassUtils.getUserClass(bean),
+                method -> rulesByMethod.put(method, compile(method)),
+                method -> method.isAnnotationPresent(RequiresRole.class));
+        return bean;
+    }
+
+    // metodele bean-urilor create inaintea matricei (sau ale proxy-urilor construite manual) se compileaza la primul apel
+    public PermissionRule getRule(Method method) {
+        PermissionRule rule = rulesByMethod.get(method);
+        return rule != null ? rule : rulesByMethod.computeIfAbsent(method, this::compile);
+    }
+
+    int size() {
+        return rulesByMethod.size();
+    }
+
+    private PermissionRule compile(Method method) {
+        RequiresRole requiresRole = AnnotationUtils.findAnnotation(method, RequiresRole.class);
+        if(requiresRole == null || requiresRole.value().length == 0){
+            throw new IllegalStateException("@RequiresRole fara roluri pe " + method);
+        }
+        int requiredMask = Roles.mask(Arrays.asList(requiresRole.value()));
+
+        CustomerArgument customerArgument = CustomerArgument.resolve(method, parameterNameDiscoverer);
+        return new PermissionRule(requiredMask, customerArgument.getIndex(), customerArgument.getKind());
+    }
+
+    public static final class PermissionRule {
+        static final int CUSTOMER_ID = CustomerArgument.CUSTOMER_ID;
+        static final int ORDER = CustomerArgument.ORDER;
+        static final int ORDERS = CustomerArgument.ORDERS;
+
+        private final int requiredMask;
+        private final int argumentIndex;
+        private final int argumentKind;
+
+        private PermissionRule(int requiredMask, int argumentIndex, int argumentKind) {
+            this.requiredMask = requiredMask;
+            this.argumentIndex = argumentIndex;
+            this.argumentKind = argumentKind;
+        }
+
+        public boolean allows(int roleMask) {
+            return (roleMask & requiredMask) != 0;
+        }
+
+        public int getRequiredMask() {
+            return requiredMask;
+        }
+
+        public int getArgumentIndex() {
+            return argumentIndex;
+        }
+
+        public int getArgumentKind() {
+            return argumentKind;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.exceptions.TooManyRequestsException;
+import com.practice.onlineShop.services.CustomerRateLimiter;
+import com.practice.onlineShop.vos.OrderVO;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Limiteaza cererile de scriere ale fiecarui client pe metodele din controller marcate cu @RateLimited.
+// Ruleaza imediat dupa ExposeInvocationInterceptor (care trebuie sa fie primul, altfel @Before nu are
+// MethodInvocation), inaintea oricarui acces la baza de date: o cerere peste limita primeste 429 cu Retry-After.
+// Un client fara id (userId lipsa in comanda) nu este limitat aici; SecurityAspect il respinge oricum.
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@RequiredArgsConstructor
+public class RateLimitAspect {
+
+    private final CustomerRateLimiter customerRateLimiter;
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final Map<Method, CustomerArgument> customerArgumentsByMethod = new ConcurrentHashMap<>();
+
+    @Before("@annotation(com.practice.onlineShop.aspects.RateLimited)")
+    public void checkRateLimit(JoinPoint joinPoint) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CustomerArgument customerArgument = customerArgumentsByMethod.get(method);
+        if(customerArgument == null){
+            customerArgument = customerArgumentsByMethod.computeIfAbsent(method,
+                    key -> CustomerArgument.resolve(key, parameterNameDiscoverer));
+        }
+        Object argument = joinPoint.getArgs()[customerArgument.getIndex()];
+
+        switch(customerArgument.getKind()){
+            case CustomerArgument.CUSTOMER_ID:
+                acquire((Long) argument);
+                break;
+            case CustomerArgument.ORDER:
+                acquire((OrderVO) argument);
+                break;
+            default:
+                // un lot consuma cate un token pentru fiecare comanda; daca un client este peste limita nu se
+                // consuma nimic de la ceilalti
+                Map<Long, Integer> permitsByCustomerId = new HashMap<>();
+                for(OrderVO orderVO : (List<OrderVO>) argument){
+                    if(orderVO != null && orderVO.getUserId() != null){
+                        permitsByCustomerId.merge(orderVO.getUserId().longValue(), 1, Integer::sum);
+                    }
+                }
+                checkWait(customerRateLimiter.tryAcquireAll(permitsByCustomerId));
+        }
+    }
+
+    private void acquire(OrderVO orderVO) {
+        if(orderVO != null && orderVO.getUserId() != null){
+            acquire(orderVO.getUserId().longValue());
+        }
+    }
+
+    private void acquire(Long customerId) {
+        if(customerId == null){
+            return;
+        }
+        checkWait(customerRateLimiter.tryAcquire(customerId));
+    }
+
+    private void checkWait(long waitNanos) {
+        if(waitNanos > 0){
+            throw new TooManyRequestsException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+    }
+}
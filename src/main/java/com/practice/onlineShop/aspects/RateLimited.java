@@ -0,0 +1,13 @@
+package com.practice.onlineShop.aspects;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// fiecare apel consuma un token din bucket-ul clientului (vezi RateLimitAspect si CustomerRateLimiter);
+// clientul se ia din customerId, dintr-un OrderVO sau din userId-urile unei List<OrderVO>
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+}
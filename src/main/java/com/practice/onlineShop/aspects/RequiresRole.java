@@ -0,0 +1,16 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.enums.Roles;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// metoda poate fi apelata doar de un user care are cel putin unul dintre roluri (vezi SecurityAspect).
+// User-ul vine din parametrul customerId, dintr-un OrderVO sau dintr-o List<OrderVO> (userId-ul fiecarei comenzi).
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresRole {
+    Roles[] value();
+}
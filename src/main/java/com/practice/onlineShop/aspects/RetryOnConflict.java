@@ -0,0 +1,12 @@
+package com.practice.onlineShop.aspects;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// metoda este reluata intr-o tranzactie noua cand pica cu OptimisticLockingFailureException (vezi ConflictRetryAspect)
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
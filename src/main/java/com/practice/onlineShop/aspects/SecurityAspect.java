@@ -1,228 +1,116 @@
 package com.practice.onlineShop.aspects;
 
-import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.aspects.PermissionMatrix.PermissionRule;
 import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidAccessTokenException;
 import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
 import com.practice.onlineShop.exceptions.InvalidOperationException;
-import com.practice.onlineShop.repositories.UserRepository;
+import com.practice.onlineShop.services.AccessTokenService;
+import com.practice.onlineShop.services.AccessTokenService.AccessToken;
+import com.practice.onlineShop.services.UserRolesCache;
 import com.practice.onlineShop.vos.OrderVO;
-import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
-import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
 
-import java.util.Collection;
-import java.util.Optional;
-
-import static com.practice.onlineShop.enums.Roles.*;
+import java.util.*;
 
+// Verifica rolurile cerute de @RequiresRole. Regula metodei (masca rolurilor si argumentul cu user-ul) este
+// precalculata in PermissionMatrix, deci un apel inseamna o citire din map si un AND pe biti.
+// Cu "Authorization: Bearer <token>" user-ul si rolurile vin din token-ul semnat (verificat in memorie), iar
+// customerId-ul din cerere trebuie sa fie al lui. Fara token rolurile vin din UserRolesCache, daca
+// shop.security.token.required nu cere token pentru cererile HTTP.
 @Aspect
 @Component
-@RequiredArgsConstructor
 public class SecurityAspect{
-    private final UserRepository userRepository;
-
-    @Pointcut("execution(* com.practice.onlineShop.services.ProductService.addProduct(..))")
-    public void addProduct(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.ProductService.updateProduct(..))")
-    public void updateProduct(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.ProductService.deleteProduct(..))")
-    public void deleteProduct(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.ProductService.addStock(..))")
-    public void addStock(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.OrderService.deliver(..))")
-    public void deliverPointcut(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.OrderService.addOrder(..))")
-    public void addOrderPointcut(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.OrderService.cancelOrder(..))")
-    public void cancelOrderPointcut(){
-    }
-
-    @Pointcut("execution(* com.practice.onlineShop.services.OrderService.returnOrder(..))")
-    public void returnOrderPointcut(){
-    }
-
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.addProduct()")
-    public void checkSecurityBeforeAddingProduct(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[1];
-        Optional<User> userOptional = userRepository.findById(customerId);
-
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
-        }
-        User user = userOptional.get();
-
-        if(userIsNotAllowedToAddProduct(user.getRoles())){
-            throw new InvalidOperationException();
-        }
-
-        System.out.println(customerId);
-    }
-
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.deleteProduct()")
-    public void checkSecurityBeforeDeletingProduct(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[1];
-        Optional<User> userOptional = userRepository.findById(customerId);
-
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
-        }
-        User user = userOptional.get();
+    private final PermissionMatrix permissionMatrix;
+    private final UserRolesCache userRolesCache;
+    private final AccessTokenService accessTokenService;
+    private final boolean tokenRequired;
 
-        if(userIsNotAllowedToDeleteProduct(user.getRoles())){
-            throw new InvalidOperationException();
-        }
-
-        System.out.println(customerId);
+    public SecurityAspect(PermissionMatrix permissionMatrix, UserRolesCache userRolesCache, AccessTokenService accessTokenService,
+                          @Value("${shop.security.token.required:false}") boolean tokenRequired) {
+        this.permissionMatrix = permissionMatrix;
+        this.userRolesCache = userRolesCache;
+        this.accessTokenService = accessTokenService;
+        this.tokenRequired = tokenRequired;
     }
 
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.addStock()")
-    public void checkSecurityBeforeAddingStock(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[2];
-        Optional<User> userOptional = userRepository.findById(customerId);
+    @Before("@annotation(com.practice.onlineShop.aspects.RequiresRole)")
+    public void checkRequiredRole(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException, InvalidAccessTokenException {
+        PermissionRule rule = permissionMatrix.getRule(((MethodSignature) joinPoint.getSignature()).getMethod());
+        Object argument = joinPoint.getArgs()[rule.getArgumentIndex()];
 
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
+        AccessToken accessToken = accessTokenService.getCurrentToken();
+        if(accessToken == null && tokenRequired && RequestContextHolder.getRequestAttributes() != null){
+            throw new InvalidAccessTokenException();
         }
-        User user = userOptional.get();
 
-        if(userIsNotAllowedToAddStock(user.getRoles())){
-            throw new InvalidOperationException();
+        switch(rule.getArgumentKind()){
+            case PermissionRule.CUSTOMER_ID:
+                checkCustomer(rule, (Long) argument, accessToken);
+                break;
+            case PermissionRule.ORDER:
+                checkCustomer(rule, getCustomerId((OrderVO) argument), accessToken);
+                break;
+            default:
+                checkCustomers(rule, (List<OrderVO>) argument, accessToken);
         }
-
-        System.out.println(customerId);
     }
 
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.updateProduct()")
-    public void checkSecurityBeforeUpdatingProduct(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[1];
-        Optional<User> userOptional = userRepository.findById(customerId);
-
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
+    private void checkCustomer(PermissionRule rule, Long customerId, AccessToken accessToken) throws InvalidCustomerIdException, InvalidOperationException {
+        if(accessToken != null){
+            checkToken(rule, customerId, accessToken);
+            return;
         }
-        User user = userOptional.get();
-
-        if(userIsNotAllowedToUpdateProduct(user.getRoles())){
+        // rolurile vin din UserRolesCache (sau dintr-un SELECT cu join), deci verificarea merge si in afara
+        // unei cereri HTTP (OrderIntakePipeline)
+        if(!rule.allows(userRolesCache.getRoleMask(customerId))){
             throw new InvalidOperationException();
         }
-
-        System.out.println(customerId);
     }
 
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.addOrderPointcut()")
-    public void checkSecurityBeforeAddingAnOrder(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        OrderVO orderVO = (OrderVO) joinPoint.getArgs()[0]; // pornirea se face de la 0
-
-        if(orderVO.getUserId() == null){
-            throw new InvalidCustomerIdException();
-        }
-
-        Optional<User> userOptional = userRepository.findById(orderVO.getUserId().longValue());
-
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
+    private void checkCustomers(PermissionRule rule, List<OrderVO> orderVOs, AccessToken accessToken) throws InvalidCustomerIdException, InvalidOperationException {
+        Set<Long> customerIds = new HashSet<>();
+        for(OrderVO orderVO : orderVOs){
+            customerIds.add(getCustomerId(orderVO));
         }
-        User user = userOptional.get();
-
-        if(userIsNotAllowedToAddAnOrder(user.getRoles())){
-            throw new InvalidOperationException();
+        if(customerIds.isEmpty()){
+            return;
         }
-
-    }
-
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.cancelOrderPointcut()")
-    public void checkSecurityBeforeCancelingOrder(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[1];
-        Optional<User> userOptional = userRepository.findById(customerId);
-
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
+        // cu token, tot lotul trebuie sa fie al user-ului din token
+        if(accessToken != null){
+            for(Long customerId : customerIds){
+                checkToken(rule, customerId, accessToken);
+            }
+            return;
         }
-        User user = userOptional.get();
 
-        if(userIsNotAllowedToCancel(user.getRoles())){
-            throw new InvalidOperationException();
+        // user-ii din lot care nu sunt in cache se citesc, cu rolurile lor, intr-un singur SELECT
+        for(Set<Roles> roles : userRolesCache.getRoles(customerIds).values()){
+            if(!rule.allows(Roles.mask(roles))){
+                throw new InvalidOperationException();
+            }
         }
-
-        System.out.println(customerId);
     }
 
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.deliverPointcut()")
-    public void checkSecurityBeforeDeliver(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[1];
-        Optional<User> userOptional = userRepository.findById(customerId);
-
-        if(!userOptional.isPresent()){
+    private void checkToken(PermissionRule rule, Long customerId, AccessToken accessToken) throws InvalidCustomerIdException, InvalidOperationException {
+        if(customerId == null){
             throw new InvalidCustomerIdException();
         }
-        User user = userOptional.get();
-
-        if(userIsNotAllowedToDeliver(user.getRoles())){
+        if(customerId != accessToken.getUserId() || !rule.allows(accessToken.getRoleMask())){
             throw new InvalidOperationException();
         }
-
-        System.out.println(customerId);
     }
 
-    @Before("com.practice.onlineShop.aspects.SecurityAspect.returnOrderPointcut()")
-    public void checkSecurityBeforeReturningOrder(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
-        Long customerId = (Long) joinPoint.getArgs()[1];
-        Optional<User> userOptional = userRepository.findById(customerId);
-        if(!userOptional.isPresent()){
+    private Long getCustomerId(OrderVO orderVO) throws InvalidCustomerIdException {
+        if(orderVO.getUserId() == null){
             throw new InvalidCustomerIdException();
         }
-        User user = userOptional.get();
-
-        if(userIsNotAllowedToReturnOrder(user.getRoles())){
-            throw new InvalidOperationException();
-        }
-    }
-
-    private boolean userIsNotAllowedToReturnOrder(Collection<Roles> roles) {
-        return !roles.contains(CLIENT);
-    }
-
-
-    private boolean userIsNotAllowedToDeliver(Collection<Roles> roles) {
-        return !roles.contains(EXPEDITOR);
-    }
-
-    private boolean userIsNotAllowedToAddAnOrder(Collection<Roles> roles) {
-        return !roles.contains(CLIENT);
-    }
-
-    private boolean userIsNotAllowedToAddProduct(Collection<Roles> roles) {
-        return !roles.contains(ADMIN);
-    }
-
-    private boolean userIsNotAllowedToDeleteProduct(Collection<Roles> roles) {
-        return !roles.contains(ADMIN);
-    }
-
-    private boolean userIsNotAllowedToUpdateProduct(Collection<Roles> roles) {
-        return !roles.contains(ADMIN) && !roles.contains(EDITOR);
-    }
-
-    private boolean userIsNotAllowedToCancel(Collection<Roles> roles) {
-        return !roles.contains(CLIENT);
-    }
-
-    private boolean userIsNotAllowedToAddStock(Collection<Roles> roles) {
-        return !roles.contains(ADMIN);
+        return orderVO.getUserId().longValue();
     }
 }
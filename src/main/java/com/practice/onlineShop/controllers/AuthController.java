@@ -0,0 +1,22 @@
+package com.practice.onlineShop.controllers;
+
+import com.practice.onlineShop.exceptions.InvalidCredentialsException;
+import com.practice.onlineShop.services.AccessTokenService;
+import com.practice.onlineShop.vos.AccessTokenVO;
+import com.practice.onlineShop.vos.LoginVO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/auth")
+@RequiredArgsConstructor
+public class AuthController {
+
+    private final AccessTokenService accessTokenService;
+
+    // token-ul se trimite apoi in header-ul "Authorization: Bearer <token>"
+    @PostMapping("/login")
+    public AccessTokenVO login(@RequestBody LoginVO loginVO) throws InvalidCredentialsException {
+        return accessTokenService.login(loginVO);
+    }
+}
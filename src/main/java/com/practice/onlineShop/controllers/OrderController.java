@@ -1,36 +1,94 @@
 package com.practice.onlineShop.controllers;
 
+import com.practice.onlineShop.aspects.RateLimited;
 import com.practice.onlineShop.exceptions.*;
+import com.practice.onlineShop.services.IdempotencyService;
+import com.practice.onlineShop.services.OrderIntakePipeline;
 import com.practice.onlineShop.services.OrderService;
+import com.practice.onlineShop.vos.DeliveryResultVO;
+import com.practice.onlineShop.vos.OrderResultVO;
 import com.practice.onlineShop.vos.OrderVO;
+import com.practice.onlineShop.vos.ReturnResultVO;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Optional;
+
 @RestController
 @RequestMapping("/order")
 @RequiredArgsConstructor
 public class OrderController {
 
         private final OrderService orderService;
+        private final IdempotencyService idempotencyService;
+        private final Optional<OrderIntakePipeline> orderIntakePipeline;
 
+        @RateLimited
         @PostMapping
-        public void addOrder(@RequestBody OrderVO orderVO) throws InvalidCustomerIdException, InvalidProductsException, InvalidProductIdException, NotEnoughStockException {
-                orderService.addOrder(orderVO);
+        public void addOrder(@RequestBody OrderVO orderVO, @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey)
+                throws InvalidCustomerIdException, InvalidProductsException, InvalidProductIdException, NotEnoughStockException,
+                IdempotencyKeyReusedException, OrderIntakeFullException {
+                if(idempotencyKey == null){
+                        placeOrder(orderVO);
+                        return;
+                }
+                // cheia este valabila doar pentru clientul care a trimis-o
+                String customerIdempotencyKey = orderVO.getUserId() + ":" + idempotencyKey;
+                try {
+                        // prin OrderIntakePipeline comanda este scrisa in tranzactia firului care scrie loturile
+                        idempotencyService.execute(customerIdempotencyKey, orderVO, orderIntakePipeline.isPresent(), () -> placeOrder(orderVO));
+                } catch (InvalidCustomerIdException | InvalidProductsException | InvalidProductIdException | NotEnoughStockException
+                        | IdempotencyKeyReusedException | OrderIntakeFullException | RuntimeException e) {
+                        throw e;
+                } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                }
+        }
+
+        @RateLimited
+        @PostMapping("/batch")
+        public List<OrderResultVO> addOrders(@RequestBody List<OrderVO> orderVOs) {
+                return orderService.addOrders(orderVOs);
         }
 
+        @RateLimited
         @PatchMapping ("/{orderId}/{customerId}")
         public void deliver(@PathVariable Integer orderId, @PathVariable Long customerId) throws InvalidOrderIdException, OrderCanceledException {
                 orderService.deliver(orderId, customerId);
         }
 
+        @RateLimited
+        @PatchMapping("/deliver/{customerId}")
+        public List<DeliveryResultVO> deliverOrders(@RequestBody List<Integer> orderIds, @PathVariable Long customerId) {
+                return orderService.deliverOrders(orderIds, customerId);
+        }
+
+        @RateLimited
         @PatchMapping("/cancel/{orderId}/{customerId}")
         public void cancelOrder(@PathVariable Integer orderId, @PathVariable Long customerId) throws InvalidOrderIdException, OrderAlreadyDeliveredException {
                 orderService.cancelOrder(orderId, customerId);
         }
 
+        @RateLimited
         @PatchMapping("/return/{orderId}/{customerId}")
-        public void returnOrder(@PathVariable Integer orderId, @PathVariable Long customerId) throws InvalidOrderIdException, OrderNotDeliveredYetException, OrderCanceledException {
+        public void returnOrder(@PathVariable Integer orderId, @PathVariable Long customerId) throws InvalidOrderIdException, OrderNotDeliveredYetException, OrderCanceledException, OrderAlreadyReturnedException {
                 orderService.returnOrder(orderId, customerId);
         }
 
+        @RateLimited
+        @PatchMapping("/return/{customerId}")
+        public List<ReturnResultVO> returnOrders(@RequestBody List<Integer> orderIds, @PathVariable Long customerId) {
+                return orderService.returnOrders(orderIds, customerId);
+        }
+
+        private void placeOrder(OrderVO orderVO) throws InvalidCustomerIdException, InvalidProductsException, InvalidProductIdException,
+                NotEnoughStockException, OrderIntakeFullException {
+                if(orderIntakePipeline.isPresent()){
+                        orderIntakePipeline.get().submit(orderVO);
+                } else {
+                        orderService.addOrder(orderVO);
+                }
+        }
+
 }
@@ -1,48 +1,173 @@
 package com.practice.onlineShop.controllers;
 
+import com.practice.onlineShop.aspects.RateLimited;
+import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.enums.ExportFormats;
+import com.practice.onlineShop.enums.ImportFormats;
+import com.practice.onlineShop.exceptions.InvalidImportFileException;
+import com.practice.onlineShop.exceptions.InvalidPageTokenException;
 import com.practice.onlineShop.exceptions.InvalidProductCodeException;
+import com.practice.onlineShop.services.CatalogSnapshot;
+import com.practice.onlineShop.services.CatalogVersions;
+import com.practice.onlineShop.services.CurrencyConverter;
+import com.practice.onlineShop.services.ProductExportService;
+import com.practice.onlineShop.services.ProductImportService;
 import com.practice.onlineShop.services.ProductService;
+import com.practice.onlineShop.vos.ProductFilterVO;
+import com.practice.onlineShop.vos.ProductImportResultVO;
+import com.practice.onlineShop.vos.ProductPageVO;
+import com.practice.onlineShop.vos.ProductSearchResultVO;
 import com.practice.onlineShop.vos.ProductVo;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @RestController
 @RequestMapping("/product")
 @RequiredArgsConstructor
 public class ProductController {
+    public static final String NEXT_PAGE_TOKEN_HEADER = "X-Next-Page-Token";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    public static final String SNAPSHOT_AGE_HEADER = "X-Snapshot-Age-Ms";
+    public static final String SNAPSHOT_BUILD_DURATION_HEADER = "X-Snapshot-Build-Duration-Ms";
+
     private final ProductService productService;
+    private final ProductExportService productExportService;
+    private final ProductImportService productImportService;
+    private final CatalogVersions catalogVersions;
+    private final CatalogSnapshot catalogSnapshot;
+    private final CurrencyConverter currencyConverter;
 
+    @RateLimited
     @PostMapping("/{customerId}")
     public void addProduct(@RequestBody ProductVo productVo, @PathVariable Long customerId){
         productService.addProduct(productVo, customerId);
 
     }
 
+    // corpul cererii este citit ca stream, nu intreg in memorie: ?format=CSV (cu header) sau ?format=NDJSON
+    @RateLimited
+    @PostMapping("/import/{customerId}")
+    public ProductImportResultVO importProducts(@PathVariable Long customerId, @RequestParam(defaultValue = "NDJSON") ImportFormats format,
+                                                HttpServletRequest request) throws IOException, InvalidImportFileException {
+        return productImportService.importProducts(request.getInputStream(), customerId, format);
+    }
+
+    // tot catalogul, scris direct in raspuns pe masura ce este citit: ?format=NDJSON (implicit) sau ?format=JSON
+    @GetMapping("/export")
+    public void exportProducts(@RequestParam(defaultValue = "NDJSON") ExportFormats format, HttpServletResponse response) throws IOException {
+        response.setContentType(format == ExportFormats.JSON ? "application/json" : "application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        productExportService.exportProducts(format, response.getOutputStream());
+    }
+
+    // cautare dupa cuvintele din descriere sau dupa prefixul codului; numarul total de rezultate vine in header
+    @GetMapping("/search")
+    public ResponseEntity<ProductVo[]> searchProducts(@RequestParam String q, @RequestParam(required = false) Integer offset,
+                                                      @RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) Currencies currency) {
+        ProductSearchResultVO searchResult = productService.searchProducts(q, offset, limit, currency);
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, Integer.toString(searchResult.getTotalMatches()))
+                .body(searchResult.getProducts().toArray(new ProductVo[]{}));
+    }
+
+    // toate produsele valide, din snapshot-ul deja serializat (gzip daca clientul accepta); poate intarzia putin fata de DB
+    @GetMapping("/catalog")
+    public ResponseEntity<byte[]> getCatalog(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                             WebRequest webRequest) {
+        CatalogSnapshot.Snapshot snapshot = catalogSnapshot.getSnapshot();
+        if(snapshot == null){
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        // ETag slab: aceeasi versiune este trimisa si cu gzip si fara
+        if(webRequest.checkNotModified("W/" + catalogVersions.getCatalogETag(snapshot.getCatalogVersion()))){
+            return null;
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(SNAPSHOT_AGE_HEADER, Long.toString(snapshot.getAgeMillis()))
+                .header(SNAPSHOT_BUILD_DURATION_HEADER, Long.toString(snapshot.getBuildDurationMillis()));
+        if(gzip){
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(gzip ? snapshot.getGzippedJson() : snapshot.getJson());
+    }
+
+    // daca If-None-Match contine versiunea curenta raspundem 304 fara sa citim produsul;
+    // ETag-ul se ia inainte de citire, deci poate fi cel mult mai vechi decat produsul trimis, niciodata mai nou.
+    // Cu ?currency= pretul este convertit, iar ETag-ul contine si moneda si versiunea cursurilor
     @GetMapping("/{productCode}")
-    public ProductVo getProduct(@PathVariable String productCode) throws InvalidProductCodeException {
-        return productService.getProduct(productCode);
+    public ProductVo getProduct(@PathVariable String productCode, @RequestParam(required = false) Currencies currency,
+                                WebRequest webRequest) throws InvalidProductCodeException {
+        long ratesVersion = currencyConverter.getRates().getVersion();
+        String eTag = withCurrency(catalogVersions.getProductETag(productCode), currency, ratesVersion);
+        if(eTag != null && webRequest.checkNotModified(eTag)){
+            return null;
+        }
+        long catalogVersion = catalogVersions.getCatalogVersion();
+        ProductVo productVo = productService.getProduct(productCode, currency);
+        if(eTag == null){
+            eTag = withCurrency(catalogVersions.getProductETag(productCode, productVo.getId(), catalogVersion), currency, ratesVersion);
+            if(eTag != null && webRequest.checkNotModified(eTag)){
+                return null;
+            }
+        }
+        return productVo;
     }
 
     @GetMapping
-    public ProductVo[] getProducts(){
-        return productService.getProducts().toArray(new ProductVo[]{});
+    public ResponseEntity<ProductVo[]> getProducts(@RequestParam(required = false) String pageToken,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestParam(required = false) Currencies currency,
+                                                   ProductFilterVO filter, WebRequest webRequest) throws InvalidPageTokenException {
+        // versiunea se citeste inaintea produselor: o scriere in timpul citirii schimba ETag-ul la cererea urmatoare
+        String eTag = withCurrency(catalogVersions.getCatalogETag(catalogVersions.getCatalogVersion()), currency,
+                currencyConverter.getRates().getVersion());
+        if(webRequest.checkNotModified(eTag)){
+            return null;
+        }
+        ProductPageVO productPage = productService.getProductsPage(pageToken, limit, filter, currency);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(productPage.getNextPageToken() != null){
+            response.header(NEXT_PAGE_TOKEN_HEADER, productPage.getNextPageToken());
+        }
+        return response.body(productPage.getProducts().toArray(new ProductVo[]{}));
     }
 
+    @RateLimited
     @PutMapping ("/{customerId}")
     public void updateProduct(@RequestBody ProductVo productVo, @PathVariable Long customerId) throws InvalidProductCodeException {
         productService.updateProduct(productVo, customerId);
     }
 
+    @RateLimited
     @DeleteMapping("/{productCode}/{customerId}")
     public void deleteProduct(@PathVariable String productCode, @PathVariable Long customerId) throws InvalidProductCodeException {
         productService.deleteProduct(productCode, customerId);
     }
 
+    @RateLimited
     @PatchMapping("/{productCode}/{quantity}/{customerId}")
     public void addStock(@PathVariable String productCode, @PathVariable Integer quantity, @PathVariable Long customerId) throws InvalidProductCodeException {
         productService.addStock(productCode, quantity, customerId);
     }
 
+    private String withCurrency(String eTag, Currencies currency, long ratesVersion) {
+        if(eTag == null || currency == null){
+            return eTag;
+        }
+        return eTag.substring(0, eTag.length() - 1) + "-" + currency + "-" + ratesVersion + "\"";
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.practice.onlineShop.entities;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// o cerere POST /order deja executata cu succes, pastrata cand shop.idempotency.persistent=true
+@Entity
+@Setter
+@Getter
+public class IdempotencyRecord {
+    @Id
+    private String idempotencyKey;
+    // SHA-256 (Base64) peste JSON-ul cererii
+    private String requestDigest;
+    private long createdAt;
+}
@@ -1,5 +1,6 @@
 package com.practice.onlineShop.entities;
 
+import com.practice.onlineShop.enums.OrderStates;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -9,14 +10,16 @@ import javax.persistence.*;
 import java.util.Collection;
 import java.util.List;
 
-import static javax.persistence.GenerationType.IDENTITY;
+import static javax.persistence.EnumType.ORDINAL;
+import static javax.persistence.GenerationType.SEQUENCE;
 
 @Entity
 @Setter
 @Getter
 public class Orders {
     @Id
-    @GeneratedValue(strategy = IDENTITY)
+    @GeneratedValue(strategy = SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private long id;
 
     @OneToMany(cascade = CascadeType.ALL) // one order to many orderItems
@@ -25,7 +28,7 @@ public class Orders {
     @OneToOne // un order poate avea doar un user
     @JoinColumn(name = "user_id")
     private User user;
-    private boolean isDelivered;
-    private boolean isReturned;
-    private boolean isCanceled;
+    @Enumerated(ORDINAL)
+    @Column(nullable = false)
+    private OrderStates state = OrderStates.NEW;
 }
@@ -3,25 +3,38 @@ package com.practice.onlineShop.entities;
 import com.practice.onlineShop.enums.Currencies;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 
 import static javax.persistence.EnumType.STRING;
-import static javax.persistence.GenerationType.IDENTITY;
+import static javax.persistence.GenerationType.SEQUENCE;
 
 @Entity
+// indexuri pentru filtrele din GET /product; un interval de pret singur nu are index, pagina ordonata dupa id
+// se citeste mai ieftin pe cheia primara
+@Table(indexes = {
+        @Index(name = "idx_product_currency_valid_price", columnList = "currency, valid, price"),
+        @Index(name = "idx_product_valid_price", columnList = "valid, price")
+})
+@DynamicUpdate // un UPDATE pe entitate nu rescrie stocul daca nu a fost modificat (stocul se schimba prin StockService)
 @Setter
 @Getter
 public class Product {
     @Id
-    @GeneratedValue(strategy = IDENTITY)
+    // secventa in loc de IDENTITY: id-urile se aloca in blocuri, deci INSERT-urile din import se pot trimite in loturi JDBC
+    @GeneratedValue(strategy = SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private long id;
     @Column(unique = true)
     private String code;
     private String description;
-    private double price;
+    // in unitati minore ale monedei (100 = 1.00 RON)
+    private long price;
     private int stock;
     private boolean valid;
     @Enumerated(STRING)
     private Currencies currency;
+    @Version
+    private long version;
 }
@@ -0,0 +1,24 @@
+package com.practice.onlineShop.entities;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
+
+import static javax.persistence.GenerationType.SEQUENCE;
+
+// o modificare de stoc inca neaplicata pe tabela product (folosita doar de StockLedger)
+@Entity
+@Setter
+@Getter
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = SEQUENCE, generator = "stock_movement_seq")
+    @SequenceGenerator(name = "stock_movement_seq", sequenceName = "stock_movement_seq", allocationSize = 50)
+    private long id;
+    private long productId;
+    private int delta;
+}
@@ -0,0 +1,13 @@
+package com.practice.onlineShop.enums;
+
+// scris in jurnal cu numele, deci valorile se pot reordona
+public enum AuditActions {
+    ADD_PRODUCT,
+    UPDATE_PRODUCT,
+    ADD_STOCK,
+    IMPORT_PRODUCTS,
+    ADD_ORDER,
+    DELIVER_ORDER,
+    CANCEL_ORDER,
+    RETURN_ORDER
+}
@@ -0,0 +1,9 @@
+package com.practice.onlineShop.enums;
+
+// cand forteaza AuditJournal scrierea pe disc: niciodata (doar flush catre sistemul de operare), dupa fiecare lot
+// sau cel mult o data la shop.audit.fsync-interval-ms
+public enum AuditFsyncPolicies {
+    NEVER,
+    BATCH,
+    INTERVAL
+}
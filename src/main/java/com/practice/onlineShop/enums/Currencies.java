@@ -1,7 +1,18 @@
 package com.practice.onlineShop.enums;
 
+// preturile se tin in unitati minore (centi, bani); fractionDigits spune cate zecimale are o unitate intreaga
 public enum Currencies{
-    EUR,
-    USD,
-    RON
+    EUR(2),
+    USD(2),
+    RON(2);
+
+    private final int fractionDigits;
+
+    Currencies(int fractionDigits) {
+        this.fractionDigits = fractionDigits;
+    }
+
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
 }
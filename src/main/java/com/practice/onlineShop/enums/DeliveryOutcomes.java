@@ -0,0 +1,7 @@
+package com.practice.onlineShop.enums;
+
+public enum DeliveryOutcomes {
+    DELIVERED,
+    CANCELED,
+    UNKNOWN
+}
@@ -0,0 +1,6 @@
+package com.practice.onlineShop.enums;
+
+public enum ImportFormats {
+    CSV,
+    NDJSON
+}
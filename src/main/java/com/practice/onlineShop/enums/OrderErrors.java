@@ -0,0 +1,7 @@
+package com.practice.onlineShop.enums;
+
+public enum OrderErrors{
+    INVALID_PRODUCTS,
+    INVALID_PRODUCT_ID,
+    NOT_ENOUGH_STOCK
+}
@@ -0,0 +1,9 @@
+package com.practice.onlineShop.enums;
+
+// salvat ca ORDINAL: valorile noi se adauga doar la final
+public enum OrderStates{
+    NEW,
+    DELIVERED,
+    CANCELED,
+    RETURNED
+}
@@ -0,0 +1,9 @@
+package com.practice.onlineShop.enums;
+
+public enum ReturnOutcomes {
+    RETURNED,
+    NOT_DELIVERED,
+    CANCELED,
+    ALREADY_RETURNED,
+    UNKNOWN
+}
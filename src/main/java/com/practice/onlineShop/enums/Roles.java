@@ -1,10 +1,23 @@
 package com.practice.onlineShop.enums;
 
+import java.util.Collection;
+
 public enum Roles{
     ADMIN,
     EDITOR,
     EXPEDITOR,
-    CLIENT
+    CLIENT;
 
+    // bitul rolului in mastile folosite de SecurityAspect
+    public int mask(){
+        return 1 << ordinal();
+    }
 
+    public static int mask(Collection<Roles> roles){
+        int mask = 0;
+        for(Roles role : roles){
+            mask |= role.mask();
+        }
+        return mask;
+    }
 }
@@ -0,0 +1,6 @@
+package com.practice.onlineShop.exceptions;
+
+public class IdempotencyKeyReusedException extends Exception {
+
+
+}
@@ -0,0 +1,5 @@
+package com.practice.onlineShop.exceptions;
+
+public class InvalidCredentialsException extends Exception {
+
+}
@@ -0,0 +1,5 @@
+package com.practice.onlineShop.exceptions;
+
+public class OrderAlreadyReturnedException extends Exception {
+
+}
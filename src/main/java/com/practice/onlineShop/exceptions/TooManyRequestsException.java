@@ -0,0 +1,15 @@
+package com.practice.onlineShop.exceptions;
+
+// neverificata: este aruncata de RateLimitAspect inaintea metodelor din controller, care nu o declara
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(long retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
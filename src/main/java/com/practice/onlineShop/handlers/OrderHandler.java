@@ -5,7 +5,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static org.springframework.http.ResponseEntity.status;
 
 @ControllerAdvice
@@ -50,4 +52,19 @@ public class OrderHandler {
     public ResponseEntity<String> handleOrderNotDeliveredYetException(){
         return status(BAD_REQUEST).body("Comanda nu poate fi returnata deoarece nu a fost livrata!");
     }
+
+    @ExceptionHandler(OrderAlreadyReturnedException.class)
+    public ResponseEntity<String> handleOrderAlreadyReturnedException(){
+        return status(BAD_REQUEST).body("Comanda a fost deja returnata!");
+    }
+
+    @ExceptionHandler(OrderIntakeFullException.class)
+    public ResponseEntity<String> handleOrderIntakeFullException(){
+        return status(SERVICE_UNAVAILABLE).header(RETRY_AFTER, "1").body("Prea multe comenzi in asteptare, incercati din nou!");
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<String> handleIdempotencyKeyReusedException(){
+        return status(BAD_REQUEST).body("Cheia de idempotenta a fost deja folosita pentru o alta comanda!");
+    }
 }
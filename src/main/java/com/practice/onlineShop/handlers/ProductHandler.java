@@ -1,7 +1,9 @@
 package com.practice.onlineShop.handlers;
 
 import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
+import com.practice.onlineShop.exceptions.InvalidImportFileException;
 import com.practice.onlineShop.exceptions.InvalidOperationException;
+import com.practice.onlineShop.exceptions.InvalidPageTokenException;
 import com.practice.onlineShop.exceptions.InvalidProductCodeException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -18,4 +20,14 @@ public class ProductHandler{
         return status(BAD_REQUEST).body("Codul produsului trimis este invalid!");
     }
 
+    @ExceptionHandler(InvalidPageTokenException.class)
+    public ResponseEntity<String> handleInvalidPageTokenException(){
+        return status(BAD_REQUEST).body("Token-ul de paginare este invalid!");
+    }
+
+    @ExceptionHandler(InvalidImportFileException.class)
+    public ResponseEntity<String> handleInvalidImportFileException(){
+        return status(BAD_REQUEST).body("Fisierul de import este invalid!");
+    }
+
 }
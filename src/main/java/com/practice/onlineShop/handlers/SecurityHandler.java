@@ -1,12 +1,18 @@
 package com.practice.onlineShop.handlers;
 
+import com.practice.onlineShop.exceptions.InvalidAccessTokenException;
+import com.practice.onlineShop.exceptions.InvalidCredentialsException;
 import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
 import com.practice.onlineShop.exceptions.InvalidOperationException;
+import com.practice.onlineShop.exceptions.TooManyRequestsException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 import static org.springframework.http.ResponseEntity.status;
 
 @ControllerAdvice
@@ -21,4 +27,20 @@ public class SecurityHandler{
     public ResponseEntity<String> handleInvalidOperationException(){
         return status(BAD_REQUEST).body("Utilizatorul nu are permisiunea de a executa aceasta operatiune!");
     }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequestsException(TooManyRequestsException e){
+        return status(TOO_MANY_REQUESTS).header(RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body("Prea multe cereri de la acest utilizator, incercati din nou mai tarziu!");
+    }
+
+    @ExceptionHandler(InvalidCredentialsException.class)
+    public ResponseEntity<String> handleInvalidCredentialsException(){
+        return status(UNAUTHORIZED).body("Username-ul sau parola sunt gresite!");
+    }
+
+    @ExceptionHandler(InvalidAccessTokenException.class)
+    public ResponseEntity<String> handleInvalidAccessTokenException(){
+        return status(UNAUTHORIZED).body("Token-ul de acces lipseste, este invalid sau a expirat!");
+    }
 }
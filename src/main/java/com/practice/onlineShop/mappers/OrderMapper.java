@@ -3,7 +3,6 @@ package com.practice.onlineShop.mappers;
 import com.practice.onlineShop.entities.OrderItem;
 import com.practice.onlineShop.entities.Orders;
 import com.practice.onlineShop.entities.Product;
-import com.practice.onlineShop.entities.User;
 import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
 import com.practice.onlineShop.exceptions.InvalidProductIdException;
 import com.practice.onlineShop.exceptions.InvalidProductsException;
@@ -28,43 +27,61 @@ public class OrderMapper {
         }
 
         validateOrder(orderVO);
-        Orders order = new Orders();
-
-        Optional<User> userOptional = userRepository.findById(orderVO.getUserId().longValue());
+        return toEntity(orderVO, loadProducts(orderVO.getProductIdsToQuantity().keySet()));
+    }
 
-        if(!userOptional.isPresent()){
-            throw new InvalidCustomerIdException();
+    // varianta pentru mai multe comenzi odata: produsele sunt incarcate o singura data pentru toate
+    public Orders toEntity(OrderVO orderVO, Map<Long, Product> productsById) throws InvalidCustomerIdException, InvalidProductsException, InvalidProductIdException {
+        if(orderVO == null){
+            return null;
         }
 
-        order.setUser(userOptional.get());
-
-        Map<Integer, Integer> productsIdsToQuantityMap = orderVO.getProductIdsToQuantity();
-        List<OrderItem> orderItemList = new ArrayList<>();
-
-        Set<Integer> productsIds = productsIdsToQuantityMap.keySet();
-
-        for(Integer productId : productsIds){
-            OrderItem orderItem = new OrderItem();
+        validateOrder(orderVO);
+        Orders order = new Orders();
 
-            Optional<Product> productOptional = productRepository.findById(productId.longValue());
+        // existenta user-ului a fost deja verificata in SecurityAspect, aici avem nevoie doar de referinta (fara alt SELECT)
+        order.setUser(userRepository.getOne(orderVO.getUserId().longValue()));
 
-            if(!productOptional.isPresent()){
+        List<OrderItem> orderItemList = new ArrayList<>();
+        for(Map.Entry<Integer, Integer> entry : orderVO.getProductIdsToQuantity().entrySet()){
+            Product product = productsById.get(entry.getKey().longValue());
+            if(product == null){
                 throw new InvalidProductIdException();
             }
-            orderItem.setProduct(productOptional.get()); // setam produsul valid pe orderItem
-
-            Integer productQuantity = orderVO.getProductIdsToQuantity().get(productId);
-            orderItem.setQuantity(productQuantity);
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProduct(product); // setam produsul valid pe orderItem
+            orderItem.setQuantity(entry.getValue());
             orderItemList.add(orderItem);
         }
         order.setOrderItems(orderItemList);
         return order;
     }
 
-    private void validateOrder(OrderVO orderVO) throws InvalidCustomerIdException, InvalidProductsException {
+    // un singur SELECT pentru toate produsele cerute, indiferent de numarul de linii
+    public Map<Long, Product> loadProducts(Collection<Integer> productIds) {
+        Set<Long> ids = new HashSet<>(productIds.size());
+        for(Integer productId : productIds){
+            if(productId != null){
+                ids.add(productId.longValue());
+            }
+        }
 
-        if(orderVO.getProductIdsToQuantity().isEmpty()){
+        Map<Long, Product> productsById = new HashMap<>();
+        for(Product product : productRepository.findAllByIdIn(ids)){
+            productsById.put(product.getId(), product);
+        }
+        return productsById;
+    }
+
+    public void validateOrder(OrderVO orderVO) throws InvalidProductsException {
+
+        if(orderVO.getProductIdsToQuantity() == null || orderVO.getProductIdsToQuantity().isEmpty()){
             throw new InvalidProductsException();
         }
+        for(Map.Entry<Integer, Integer> entry : orderVO.getProductIdsToQuantity().entrySet()){
+            if(entry.getKey() == null || entry.getValue() == null || entry.getValue() <= 0){
+                throw new InvalidProductsException();
+            }
+        }
     }
 }
@@ -1,7 +1,47 @@
 package com.practice.onlineShop.repositories;
 
 import com.practice.onlineShop.entities.Orders;
+import com.practice.onlineShop.enums.OrderStates;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends CrudRepository<Orders, Long> {
+
+    interface ProductQuantity {
+        long getProductId();
+        long getQuantity();
+    }
+
+    interface OrderIdAndState {
+        long getId();
+        OrderStates getState();
+    }
+
+    // schimba starea doar daca comanda este intr-una din starile permise; intoarce numarul de randuri modificate (0 sau 1)
+    @Modifying
+    @Query("update Orders o set o.state = :newState where o.id = :orderId and o.state in :allowedStates")
+    int updateState(@Param("orderId") long orderId, @Param("allowedStates") Collection<OrderStates> allowedStates,
+                    @Param("newState") OrderStates newState);
+
+    @Modifying
+    @Query("update Orders o set o.state = :newState where o.id in :orderIds and o.state in :allowedStates")
+    int updateStates(@Param("orderIds") Collection<Long> orderIds, @Param("allowedStates") Collection<OrderStates> allowedStates,
+                     @Param("newState") OrderStates newState);
+
+    @Query("select o.id as id, o.state as state from Orders o where o.id in :orderIds")
+    List<OrderIdAndState> findStatesByIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    @Query("select o.state from Orders o where o.id = :orderId")
+    Optional<OrderStates> findStateById(@Param("orderId") long orderId);
+
+    // cantitatile din toate comenzile date, adunate pe produs si ordonate dupa id-ul produsului
+    @Query("select i.product.id as productId, sum(i.quantity) as quantity from Orders o join o.orderItems i " +
+            "where o.id in :orderIds group by i.product.id order by i.product.id")
+    List<ProductQuantity> findQuantitiesByProduct(@Param("orderIds") Collection<Long> orderIds);
 }
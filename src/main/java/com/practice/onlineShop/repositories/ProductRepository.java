@@ -1,13 +1,53 @@
 package com.practice.onlineShop.repositories;
 
 import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.vos.ProductVo;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface ProductRepository extends CrudRepository<Product, Long> {
+public interface ProductRepository extends CrudRepository<Product, Long>, ProductRepositoryCustom {
+
+    // citirile pentru GET construiesc ProductVo direct din rand: nicio entitate in contextul de persistenta,
+    // deci nici snapshot pentru dirty checking, iar tranzactia read-only nu mai face flush
+    String SELECT_PRODUCT_VO = "select new com.practice.onlineShop.vos.ProductVo(p.id, p.code, p.description, p.price, p.stock, p.valid, p.currency) from Product p";
 
     Optional<Product> findByCode(String code);
 
+    List<Product> findAllByIdIn(Collection<Long> ids);
+
+    List<Product> findAllByCodeIn(Collection<String> codes);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_PRODUCT_VO + " where p.code = :code")
+    Optional<ProductVo> findVoByCode(@Param("code") String code);
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_PRODUCT_VO + " order by p.id")
+    List<ProductVo> findAllVos();
+
+    @Transactional(readOnly = true)
+    @Query(SELECT_PRODUCT_VO + " where p.id in :ids")
+    List<ProductVo> findVosByIdIn(@Param("ids") Collection<Long> ids);
+
+    // paginare dupa cheie: pagina urmatoare incepe dupa ultimul id vazut, fara OFFSET si fara COUNT
+    List<Product> findAllByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    // scade stocul doar daca ajunge pentru cantitatea ceruta; intoarce numarul de randuri modificate (0 sau 1)
+    // versiunea creste si aici, ca un updateProduct concurent sa nu rescrie un stoc vechi
+    @Modifying
+    @Query("update Product p set p.stock = p.stock - :quantity, p.version = p.version + 1 where p.id = :productId and p.stock >= :quantity")
+    int decrementStockIfAvailable(@Param("productId") long productId, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("update Product p set p.stock = p.stock + :quantity, p.version = p.version + 1 where p.id = :productId")
+    int incrementStock(@Param("productId") long productId, @Param("quantity") int quantity);
 
 }
@@ -0,0 +1,12 @@
+package com.practice.onlineShop.repositories;
+
+import com.practice.onlineShop.vos.ProductFilterVO;
+import com.practice.onlineShop.vos.ProductVo;
+
+import java.util.List;
+
+public interface ProductRepositoryCustom {
+
+    // pagina de produse dupa afterId, ordonata dupa id; in WHERE intra doar filtrele completate
+    List<ProductVo> findPage(ProductFilterVO filter, long afterId, int limit);
+}
@@ -0,0 +1,53 @@
+package com.practice.onlineShop.repositories;
+
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.vos.ProductFilterVO;
+import com.practice.onlineShop.vos.ProductVo;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+// Criteria in loc de "(:x is null or p.x = :x)": conditiile lipsa nu ajung in SQL, deci baza de date poate
+// folosi indexul potrivit pentru filtrele date
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductVo> findPage(ProductFilterVO filter, long afterId, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductVo> query = criteriaBuilder.createQuery(ProductVo.class);
+        Root<Product> product = query.from(Product.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(criteriaBuilder.greaterThan(product.get("id"), afterId));
+        if(filter.getPriceCurrency() != null){
+            predicates.add(criteriaBuilder.equal(product.get("currency"), filter.getPriceCurrency()));
+        }
+        if(filter.getValid() != null){
+            predicates.add(criteriaBuilder.equal(product.get("valid"), filter.getValid()));
+        }
+        if(filter.getMinPrice() != null){
+            predicates.add(criteriaBuilder.greaterThanOrEqualTo(product.get("price"), filter.getMinPrice()));
+        }
+        if(filter.getMaxPrice() != null){
+            predicates.add(criteriaBuilder.lessThanOrEqualTo(product.get("price"), filter.getMaxPrice()));
+        }
+
+        // aceeasi proiectie ca ProductRepository.SELECT_PRODUCT_VO
+        query.select(criteriaBuilder.construct(ProductVo.class, product.get("id"), product.get("code"), product.get("description"),
+                        product.get("price"), product.get("stock"), product.get("valid"), product.get("currency")))
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(criteriaBuilder.asc(product.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
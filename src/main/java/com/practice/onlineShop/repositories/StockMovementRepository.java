@@ -0,0 +1,29 @@
+package com.practice.onlineShop.repositories;
+
+import com.practice.onlineShop.entities.StockMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface StockMovementRepository extends CrudRepository<StockMovement, Long> {
+
+    List<StockMovement> findAllByOrderByIdAsc(Pageable pageable);
+
+    @Modifying
+    @Query("delete from StockMovement m where m.id in :ids")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    // stocul din product plus miscarile inca neaplicate, citite in acelasi statement
+    @Query(value = "select p.stock + coalesce((select sum(m.delta) from stock_movement m where m.product_id = p.id), 0) " +
+            "from product p where p.id = :productId", nativeQuery = true)
+    Long findStockIncludingPendingMovements(@Param("productId") long productId);
+
+    @Query(value = "select p.id, p.stock + coalesce((select sum(m.delta) from stock_movement m where m.product_id = p.id), 0) " +
+            "from product p", nativeQuery = true)
+    List<Object[]> findAllStocksIncludingPendingMovements();
+}
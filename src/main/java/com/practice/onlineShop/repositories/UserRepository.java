@@ -1,10 +1,24 @@
 package com.practice.onlineShop.repositories;
 
 import com.practice.onlineShop.entities.User;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface UserRepository extends CrudRepository<User, Long>{
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
+public interface UserRepository extends JpaRepository<User, Long>{
 
+    @Query("select u from User u left join fetch u.roles where u.id = :id")
+    Optional<User> findWithRolesById(@Param("id") Long id);
+
+    // user-ii impreuna cu rolurile, intr-un singur SELECT
+    @Query("select distinct u from User u left join fetch u.roles where u.id in :ids")
+    List<User> findAllWithRolesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select u from User u left join fetch u.roles where u.username = :username")
+    Optional<User> findWithRolesByUsername(@Param("username") String username);
 
 }
@@ -0,0 +1,170 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidAccessTokenException;
+import com.practice.onlineShop.exceptions.InvalidCredentialsException;
+import com.practice.onlineShop.repositories.UserRepository;
+import com.practice.onlineShop.vos.AccessTokenVO;
+import com.practice.onlineShop.vos.LoginVO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Optional;
+
+// Token-uri de acces semnate cu HMAC-SHA256: "userId.mascaRoluri.expiraLa.semnatura". Parola se verifica o singura
+// data, la login; dupa aceea SecurityAspect verifica doar semnatura si expirarea, in memorie, fara SELECT.
+// Orice instanta cu acelasi shop.security.token.secret accepta token-ul. Fara secret configurat se genereaza unul
+// la pornire, valabil doar pentru instanta curenta. Rolurile din token raman cele de la login pana la expirare.
+@Component
+public class AccessTokenService {
+
+    public static final String BEARER_PREFIX = "Bearer ";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String CURRENT_TOKEN_ATTRIBUTE = AccessTokenService.class.getName() + ".currentToken";
+
+    private final UserRepository userRepository;
+    private final SecretKeySpec secretKey;
+    private final long ttlMillis;
+    private final ThreadLocal<Mac> macs;
+
+    public AccessTokenService(UserRepository userRepository,
+                              @Value("${shop.security.token.secret:}") String secret,
+                              @Value("${shop.security.token.ttl-ms:900000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlMillis;
+        byte[] secretBytes = secret.isEmpty() ? randomSecret() : secret.getBytes(StandardCharsets.UTF_8);
+        this.secretKey = new SecretKeySpec(secretBytes, HMAC_ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    public AccessTokenVO login(LoginVO loginVO) throws InvalidCredentialsException {
+        if(loginVO.getUsername() == null || loginVO.getPassword() == null){
+            throw new InvalidCredentialsException();
+        }
+        Optional<User> userOptional = userRepository.findWithRolesByUsername(loginVO.getUsername());
+        if(!userOptional.isPresent() || !passwordMatches(userOptional.get(), loginVO.getPassword())){
+            throw new InvalidCredentialsException();
+        }
+        User user = userOptional.get();
+        int roleMask = user.getRoles() == null ? 0 : Roles.mask(user.getRoles());
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        return new AccessTokenVO(issue(user.getId(), roleMask, expiresAt), user.getId(), expiresAt);
+    }
+
+    String issue(long userId, int roleMask, long expiresAt) {
+        String payload = userId + "." + roleMask + "." + expiresAt;
+        return payload + "." + sign(payload);
+    }
+
+    public AccessToken verify(String token) throws InvalidAccessTokenException {
+        int signatureStart = token.lastIndexOf('.');
+        if(signatureStart < 0){
+            throw new InvalidAccessTokenException();
+        }
+        String payload = token.substring(0, signatureStart);
+        byte[] expectedSignature = sign(payload).getBytes(StandardCharsets.US_ASCII);
+        byte[] signature = token.substring(signatureStart + 1).getBytes(StandardCharsets.US_ASCII);
+        if(!MessageDigest.isEqual(expectedSignature, signature)){
+            throw new InvalidAccessTokenException();
+        }
+
+        String[] fields = payload.split("\\.");
+        if(fields.length != 3){
+            throw new InvalidAccessTokenException();
+        }
+        try {
+            AccessToken accessToken = new AccessToken(Long.parseLong(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+            if(accessToken.expiresAt <= System.currentTimeMillis()){
+                throw new InvalidAccessTokenException();
+            }
+            return accessToken;
+        } catch (NumberFormatException e) {
+            throw new InvalidAccessTokenException();
+        }
+    }
+
+    // token-ul din header-ul Authorization al cererii HTTP curente, verificat o singura data pe cerere;
+    // null in afara unei cereri sau daca cererea nu are token
+    public AccessToken getCurrentToken() throws InvalidAccessTokenException {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if(!(requestAttributes instanceof ServletRequestAttributes)){
+            return null;
+        }
+        AccessToken accessToken = (AccessToken) requestAttributes.getAttribute(CURRENT_TOKEN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if(accessToken != null){
+            return accessToken;
+        }
+        String authorization = ((ServletRequestAttributes) requestAttributes).getRequest().getHeader(HttpHeaders.AUTHORIZATION);
+        if(authorization == null){
+            return null;
+        }
+        if(!authorization.startsWith(BEARER_PREFIX)){
+            throw new InvalidAccessTokenException();
+        }
+        accessToken = verify(authorization.substring(BEARER_PREFIX.length()).trim());
+        requestAttributes.setAttribute(CURRENT_TOKEN_ATTRIBUTE, accessToken, RequestAttributes.SCOPE_REQUEST);
+        return accessToken;
+    }
+
+    private boolean passwordMatches(User user, String password) {
+        return user.getPassword() != null && MessageDigest.isEqual(user.getPassword().getBytes(StandardCharsets.UTF_8),
+                password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String sign(String payload) {
+        byte[] signature = macs.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] randomSecret() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+
+    public static final class AccessToken {
+        private final long userId;
+        private final int roleMask;
+        private final long expiresAt;
+
+        private AccessToken(long userId, int roleMask, long expiresAt) {
+            this.userId = userId;
+            this.roleMask = roleMask;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public int getRoleMask() {
+            return roleMask;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.AuditActions;
+import com.practice.onlineShop.enums.AuditFsyncPolicies;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Jurnalul de audit al operatiilor de scriere, in locul System.out din LogAspect. Apelantul doar rezerva un loc
+// intr-un buffer circular prealocat (un CAS), copiaza campurile si il publica; nu ia lock-uri, nu formateaza si
+// nu aloca. Un singur fir scrie inregistrarile in loturi, cate o linie separata prin tab
+// (timestamp, actiune, client, comanda, cod produs, cantitate; "-" pentru campurile lipsa), in fisiere
+// audit-<timestamp>.log rotite la max-file-bytes, dintre care se pastreaza ultimele max-files.
+// Cand buffer-ul este plin inregistrarea se pierde si se numara in shop.audit.dropped; cererea nu asteapta.
+@Component
+public class AuditJournal {
+
+    static final String FILE_PREFIX = "audit-";
+    static final String FILE_SUFFIX = ".log";
+    static final String MISSING_FIELD = "-";
+    private static final AuditActions[] ACTIONS = AuditActions.values();
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final AuditFsyncPolicies fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final long idleWaitNanos;
+
+    // buffer-ul circular: locul i contine inregistrarea cu secventa s cand published[i] == s
+    private final int mask;
+    private final long[] timestamps;
+    private final byte[] actions;
+    private final long[] customerIds;
+    private final long[] orderIds;
+    private final String[] productCodes;
+    private final int[] quantities;
+    private final AtomicLongArray published;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong consumedSequence = new AtomicLong();
+
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter writeErrorsCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    // folosite doar de firul care scrie
+    private final StringBuilder line = new StringBuilder(128);
+    private FileOutputStream currentFile;
+    private Writer currentWriter;
+    private long currentFileBytes;
+    private long lastFileTimestamp;
+    private long lastFsyncNanos;
+    private boolean unsyncedWrites;
+
+    public AuditJournal(MeterRegistry meterRegistry,
+                        @Value("${shop.audit.enabled:true}") boolean enabled,
+                        @Value("${shop.audit.directory:${java.io.tmpdir}/onlineShop-audit}") String directory,
+                        @Value("${shop.audit.buffer-size:8192}") int bufferSize,
+                        @Value("${shop.audit.max-file-bytes:67108864}") long maxFileBytes,
+                        @Value("${shop.audit.max-files:10}") int maxFiles,
+                        @Value("${shop.audit.fsync:INTERVAL}") AuditFsyncPolicies fsyncPolicy,
+                        @Value("${shop.audit.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+                        @Value("${shop.audit.idle-wait-ms:10}") long idleWaitMillis) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.idleWaitNanos = TimeUnit.MILLISECONDS.toNanos(idleWaitMillis);
+
+        // capacitatea se rotunjeste in sus la o putere a lui 2, ca indexul sa fie secventa & mask
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.mask = capacity - 1;
+        this.timestamps = new long[capacity];
+        this.actions = new byte[capacity];
+        this.customerIds = new long[capacity];
+        this.orderIds = new long[capacity];
+        this.productCodes = new String[capacity];
+        this.quantities = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for(int i = 0; i < capacity; i++){
+            published.set(i, -1);
+        }
+
+        this.writtenCounter = Counter.builder("shop.audit.written").register(meterRegistry);
+        this.droppedCounter = Counter.builder("shop.audit.dropped").register(meterRegistry);
+        this.writeErrorsCounter = Counter.builder("shop.audit.write.errors").register(meterRegistry);
+        meterRegistry.gauge("shop.audit.pending", this, AuditJournal::getPendingRecords);
+    }
+
+    public void record(AuditActions action, Long customerId, Long orderId, String productCode, Integer quantity) {
+        if(!enabled){
+            return;
+        }
+        long sequence;
+        do {
+            sequence = nextSequence.get();
+            if(sequence - consumedSequence.get() > mask){
+                droppedCounter.increment();
+                return;
+            }
+        } while(!nextSequence.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence & mask);
+        timestamps[index] = System.currentTimeMillis();
+        actions[index] = (byte) action.ordinal();
+        customerIds[index] = customerId == null ? NONE : customerId;
+        orderIds[index] = orderId == null ? NONE : orderId;
+        productCodes[index] = productCode;
+        quantities[index] = quantity == null ? Integer.MIN_VALUE : quantity;
+        published.lazySet(index, sequence);
+    }
+
+    public long getPendingRecords() {
+        return nextSequence.get() - consumedSequence.get();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if(!enabled){
+            return;
+        }
+        Files.createDirectories(directory);
+        running = true;
+        writerThread = new Thread(this::writeRecords, "audit-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // la oprire firul scrie tot ce a fost deja publicat, apoi inchide fisierul
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if(writerThread == null){
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join();
+    }
+
+    private void writeRecords() {
+        long sequence = consumedSequence.get();
+        lastFsyncNanos = System.nanoTime();
+        while(true){
+            boolean wasRunning = running;
+            long batchEnd = sequence;
+            try {
+                while(published.get((int) (batchEnd & mask)) == batchEnd){
+                    appendRecord((int) (batchEnd & mask));
+                    batchEnd++;
+                }
+                if(batchEnd != sequence){
+                    currentWriter.flush();
+                    unsyncedWrites = true;
+                    if(fsyncPolicy == AuditFsyncPolicies.BATCH){
+                        fsync();
+                    }
+                }
+                if(fsyncPolicy == AuditFsyncPolicies.INTERVAL && System.nanoTime() - lastFsyncNanos >= fsyncIntervalNanos){
+                    fsync();
+                }
+            } catch (IOException e) {
+                // lotul curent se pierde; fisierul se redeschide la urmatoarea inregistrare
+                writeErrorsCounter.increment();
+                closeCurrentFile();
+            }
+            if(batchEnd != sequence){
+                writtenCounter.increment(batchEnd - sequence);
+                sequence = batchEnd;
+                consumedSequence.set(sequence);
+                continue;
+            }
+            if(!wasRunning){
+                break;
+            }
+            LockSupport.parkNanos(idleWaitNanos);
+        }
+        try {
+            if(currentWriter != null){
+                currentWriter.flush();
+                if(fsyncPolicy != AuditFsyncPolicies.NEVER){
+                    fsync();
+                }
+            }
+        } catch (IOException e) {
+            writeErrorsCounter.increment();
+        }
+        closeCurrentFile();
+    }
+
+    private void appendRecord(int index) throws IOException {
+        line.setLength(0);
+        line.append(timestamps[index]).append('\t').append(ACTIONS[actions[index]].name()).append('\t');
+        appendLong(customerIds[index]);
+        line.append('\t');
+        appendLong(orderIds[index]);
+        line.append('\t');
+        appendText(productCodes[index]);
+        line.append('\t');
+        if(quantities[index] == Integer.MIN_VALUE){
+            line.append(MISSING_FIELD);
+        } else {
+            line.append(quantities[index]);
+        }
+        line.append('\n');
+        // locul poate fi refolosit dupa consumedSequence, dar codul nu trebuie tinut in viata pana atunci
+        productCodes[index] = null;
+
+        if(currentWriter == null || currentFileBytes >= maxFileBytes){
+            rotate();
+        }
+        currentWriter.append(line);
+        currentFileBytes += line.length();
+    }
+
+    private void appendLong(long value) {
+        if(value == NONE){
+            line.append(MISSING_FIELD);
+        } else {
+            line.append(value);
+        }
+    }
+
+    // tab-urile, liniile noi si backslash-ul din cod sunt scrise ca \t, \n si \\, ca o inregistrare sa ramana pe o linie
+    private void appendText(String text) {
+        if(text == null){
+            line.append(MISSING_FIELD);
+            return;
+        }
+        if(text.equals(MISSING_FIELD)){
+            line.append('\\');
+        }
+        for(int i = 0; i < text.length(); i++){
+            char character = text.charAt(i);
+            switch(character){
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                default:
+                    line.append(character);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if(currentWriter != null){
+            currentWriter.flush();
+            if(fsyncPolicy != AuditFsyncPolicies.NEVER){
+                fsync();
+            }
+            closeCurrentFile();
+        }
+        // numele contin timestamp-ul pe 13 cifre, deci ordinea alfabetica este ordinea in care au fost scrise
+        long fileTimestamp = Math.max(System.currentTimeMillis(), lastFileTimestamp + 1);
+        lastFileTimestamp = fileTimestamp;
+        File file = directory.resolve(String.format("%s%013d%s", FILE_PREFIX, fileTimestamp, FILE_SUFFIX)).toFile();
+        currentFile = new FileOutputStream(file, true);
+        currentWriter = new BufferedWriter(new OutputStreamWriter(currentFile, StandardCharsets.UTF_8), 64 * 1024);
+        currentFileBytes = file.length();
+        deleteOldFiles();
+    }
+
+    private void deleteOldFiles() {
+        File[] files = AuditJournalReader.listJournalFiles(directory);
+        for(int i = 0; i < files.length - maxFiles; i++){
+            if(!files[i].delete()){
+                writeErrorsCounter.increment();
+            }
+        }
+    }
+
+    private void fsync() throws IOException {
+        if(currentFile != null && unsyncedWrites){
+            currentFile.getChannel().force(false);
+        }
+        unsyncedWrites = false;
+        lastFsyncNanos = System.nanoTime();
+    }
+
+    private void closeCurrentFile() {
+        if(currentWriter != null){
+            try {
+                currentWriter.close();
+            } catch (IOException e) {
+                writeErrorsCounter.increment();
+            }
+        }
+        currentWriter = null;
+        currentFile = null;
+    }
+}
@@ -0,0 +1,166 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.AuditActions;
+import com.practice.onlineShop.vos.AuditRecordVO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Cauta in fisierele scrise de AuditJournal, in ordinea in care au fost scrise, fara sa le tina in memorie.
+// Se foloseste prin /actuator/auditjournal?customerId=&action=&from=&to=&limit= (from/to in milisecunde) sau,
+// pe un director copiat de pe server, din linia de comanda:
+//   java -cp onlineShop.jar com.practice.onlineShop.services.AuditJournalReader <director> [customerId=..] [action=..] [from=..] [to=..] [limit=..]
+@Component
+@Endpoint(id = "auditjournal")
+public class AuditJournalReader {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final Path directory;
+    private final int maxLimit;
+
+    public AuditJournalReader(@Value("${shop.audit.directory:${java.io.tmpdir}/onlineShop-audit}") String directory,
+                              @Value("${shop.audit.reader.max-limit:10000}") int maxLimit) {
+        this.directory = Paths.get(directory);
+        this.maxLimit = maxLimit;
+    }
+
+    @ReadOperation
+    public List<AuditRecordVO> query(@Nullable Long customerId, @Nullable AuditActions action, @Nullable Long from,
+                                     @Nullable Long to, @Nullable Integer limit) throws IOException {
+        int maxRecords = limit == null || limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, maxLimit);
+        List<AuditRecordVO> records = new ArrayList<>();
+        for(File file : listJournalFiles(directory)){
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while((line = reader.readLine()) != null){
+                    AuditRecordVO record = parse(line);
+                    if(record != null && matches(record, customerId, action, from, to)){
+                        records.add(record);
+                        if(records.size() >= maxRecords){
+                            return records;
+                        }
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    static File[] listJournalFiles(Path directory) {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.startsWith(AuditJournal.FILE_PREFIX) && name.endsWith(AuditJournal.FILE_SUFFIX));
+        if(files == null){
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private boolean matches(AuditRecordVO record, Long customerId, AuditActions action, Long from, Long to) {
+        return (customerId == null || customerId.equals(record.getCustomerId()))
+                && (action == null || action == record.getAction())
+                && (from == null || record.getTimestamp() >= from)
+                && (to == null || record.getTimestamp() < to);
+    }
+
+    // o linie scrisa pe jumatate (oprire bruta) sau dintr-o versiune mai noua este ignorata
+    static AuditRecordVO parse(String line) {
+        String[] fields = line.split("\t", -1);
+        if(fields.length != 6){
+            return null;
+        }
+        try {
+            return new AuditRecordVO(Long.parseLong(fields[0]), AuditActions.valueOf(fields[1]), parseLong(fields[2]),
+                    parseLong(fields[3]), parseText(fields[4]), fields[5].equals(AuditJournal.MISSING_FIELD) ? null : Integer.valueOf(fields[5]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Long parseLong(String field) {
+        return field.equals(AuditJournal.MISSING_FIELD) ? null : Long.valueOf(field);
+    }
+
+    private static String parseText(String field) {
+        if(field.equals(AuditJournal.MISSING_FIELD)){
+            return null;
+        }
+        StringBuilder text = new StringBuilder(field.length());
+        for(int i = 0; i < field.length(); i++){
+            char character = field.charAt(i);
+            if(character != '\\' || i + 1 == field.length()){
+                text.append(character);
+                continue;
+            }
+            char escaped = field.charAt(++i);
+            switch(escaped){
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                default:
+                    text.append(escaped);
+            }
+        }
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0){
+            System.err.println("Folosire: AuditJournalReader <director> [customerId=..] [action=..] [from=..] [to=..] [limit=..]");
+            System.exit(1);
+        }
+        Long customerId = null;
+        AuditActions action = null;
+        Long from = null;
+        Long to = null;
+        Integer limit = null;
+        for(int i = 1; i < args.length; i++){
+            String[] filter = args[i].split("=", 2);
+            String value = filter.length == 2 ? filter[1] : "";
+            switch(filter[0]){
+                case "customerId":
+                    customerId = Long.valueOf(value);
+                    break;
+                case "action":
+                    action = AuditActions.valueOf(value);
+                    break;
+                case "from":
+                    from = Long.valueOf(value);
+                    break;
+                case "to":
+                    to = Long.valueOf(value);
+                    break;
+                case "limit":
+                    limit = Integer.valueOf(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Filtru necunoscut: " + args[i]);
+            }
+        }
+        AuditJournalReader auditJournalReader = new AuditJournalReader(args[0], Integer.MAX_VALUE);
+        for(AuditRecordVO record : auditJournalReader.query(customerId, action, from, to, limit == null ? Integer.MAX_VALUE : limit)){
+            System.out.println(Instant.ofEpochMilli(record.getTimestamp()) + "\t" + record.getAction() + "\tclient=" + record.getCustomerId()
+                    + "\tcomanda=" + record.getOrderId() + "\tprodus=" + record.getProductCode() + "\tcantitate=" + record.getQuantity());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.practice.onlineShop.services;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cache-ul comun pentru ProductCache si UserRolesCache: intrarile expira dupa ttlMillis, iar peste maxSize sunt scoase
+// cele mai vechi. O incarcare ia intai un token pentru cheie (startLoad) si pune valoarea doar daca tokenul mai este
+// in cache (finishLoad). invalidate scoate tokenul, deci o invalidare opreste doar incarcarile aceleiasi chei.
+final class BoundedTtlCache<K, V> {
+
+    private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<K, V>> entriesInInsertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedEntries = new AtomicInteger();
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Counter evictionsCounter;
+
+    BoundedTtlCache(int maxSize, long ttlMillis, Counter evictionsCounter) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.evictionsCounter = evictionsCounter;
+    }
+
+    // valoarea din cache sau null; o intrare expirata este scoasa
+    V get(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if(entry == null || entry.loading){
+            return null;
+        }
+        if(entry.expiresAt > System.currentTimeMillis()){
+            return entry.value;
+        }
+        if(entries.remove(key, entry)){
+            evictionsCounter.increment();
+        }
+        return null;
+    }
+
+    // ca get, dar nu scoate nimic din cache
+    V peek(K key) {
+        Entry<K, V> entry = entries.get(key);
+        return entry != null && !entry.loading && entry.expiresAt > System.currentTimeMillis() ? entry.value : null;
+    }
+
+    // tokenul se ia inainte de citirea din baza de date; daca cheia are deja o intrare, aceea este tokenul
+    Entry<K, V> startLoad(K key) {
+        Entry<K, V> loading = new Entry<>(key, null, 0, true);
+        Entry<K, V> current = entries.putIfAbsent(key, loading);
+        return current != null ? current : loading;
+    }
+
+    // pune valoarea doar daca cheia nu a fost invalidata de la startLoad
+    boolean finishLoad(Entry<K, V> token, V value) {
+        Entry<K, V> entry = new Entry<>(token.key, value, System.currentTimeMillis() + ttlMillis, false);
+        if(!entries.replace(token.key, token, entry)){
+            return false;
+        }
+        entriesInInsertionOrder.add(entry);
+        // coada are cel mult maxSize intrari; la depasire scoatem cea mai veche, daca nu a fost deja inlocuita
+        if(queuedEntries.incrementAndGet() > maxSize){
+            Entry<K, V> oldestEntry = entriesInInsertionOrder.poll();
+            if(oldestEntry != null){
+                queuedEntries.decrementAndGet();
+                if(entries.remove(oldestEntry.key, oldestEntry)){
+                    evictionsCounter.increment();
+                }
+            }
+        }
+        return true;
+    }
+
+    // o incarcare esuata nu lasa tokenul in cache
+    void cancelLoad(Entry<K, V> token) {
+        if(token.loading){
+            entries.remove(token.key, token);
+        }
+    }
+
+    void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    void invalidateAll() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final long expiresAt;
+        private final boolean loading;
+
+        private Entry(K key, V value, long expiresAt, boolean loading) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.loading = loading;
+        }
+    }
+}
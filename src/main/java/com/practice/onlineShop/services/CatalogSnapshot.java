@@ -0,0 +1,118 @@
+package com.practice.onlineShop.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Lista produselor valide, deja serializata (JSON si JSON gzip). Un fir separat verifica periodic versiunea
+// catalogului si reconstruieste snapshot-ul cand s-a schimbat; cererile primesc mereu ultimul snapshot complet,
+// fara sa astepte reconstructia.
+@Component
+public class CatalogSnapshot {
+
+    @Getter
+    public static class Snapshot {
+        private final byte[] json;
+        private final byte[] gzippedJson;
+        private final long catalogVersion;
+        private final long builtAt;
+        private final long buildDurationMillis;
+
+        private Snapshot(byte[] json, byte[] gzippedJson, long catalogVersion, long builtAt, long buildDurationMillis) {
+            this.json = json;
+            this.gzippedJson = gzippedJson;
+            this.catalogVersion = catalogVersion;
+            this.builtAt = builtAt;
+            this.buildDurationMillis = buildDurationMillis;
+        }
+
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - builtAt;
+        }
+    }
+
+    private final ProductExportService productExportService;
+    private final CatalogVersions catalogVersions;
+    private final long refreshIntervalMillis;
+    private final Timer rebuildTimer;
+    private final Counter rebuildFailuresCounter;
+    private final ScheduledExecutorService rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalog-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    public CatalogSnapshot(ProductExportService productExportService, CatalogVersions catalogVersions, MeterRegistry meterRegistry,
+                           @Value("${shop.product.snapshot.refresh-interval-ms:1000}") long refreshIntervalMillis) {
+        this.productExportService = productExportService;
+        this.catalogVersions = catalogVersions;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.rebuildTimer = Timer.builder("shop.product.snapshot.rebuild").register(meterRegistry);
+        this.rebuildFailuresCounter = Counter.builder("shop.product.snapshot.rebuild.failures").register(meterRegistry);
+        meterRegistry.gauge("shop.product.snapshot.age", this, catalogSnapshot -> {
+            Snapshot currentSnapshot = catalogSnapshot.snapshot;
+            return currentSnapshot == null ? Double.NaN : currentSnapshot.getAgeMillis();
+        });
+    }
+
+    // null pana la prima constructie
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        rebuild();
+        rebuildExecutor.scheduleWithFixedDelay(this::rebuildIfCatalogChanged, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private void rebuildIfCatalogChanged() {
+        try {
+            if(snapshot == null || snapshot.catalogVersion != catalogVersions.getCatalogVersion()){
+                rebuild();
+            }
+        } catch (Exception e) {
+            // snapshot-ul vechi ramane in uz (shop.product.snapshot.age creste), incercam din nou la urmatoarea verificare
+            rebuildFailuresCounter.increment();
+        }
+    }
+
+    private void rebuild() throws IOException {
+        // versiunea se citeste inainte: o scriere din timpul constructiei va declansa inca o reconstructie
+        long catalogVersion = catalogVersions.getCatalogVersion();
+        long start = System.nanoTime();
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        productExportService.exportValidProducts(json);
+        byte[] jsonBytes = json.toByteArray();
+        ByteArrayOutputStream gzippedJson = new ByteArrayOutputStream(jsonBytes.length / 4 + 64);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(gzippedJson)) {
+            gzipOutputStream.write(jsonBytes);
+        }
+
+        long buildDurationNanos = System.nanoTime() - start;
+        rebuildTimer.record(buildDurationNanos, TimeUnit.NANOSECONDS);
+        snapshot = new Snapshot(jsonBytes, gzippedJson.toByteArray(), catalogVersion, System.currentTimeMillis(),
+                TimeUnit.NANOSECONDS.toMillis(buildDurationNanos));
+    }
+}
@@ -0,0 +1,76 @@
+package com.practice.onlineShop.services;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Versiunea catalogului creste dupa commit-ul fiecarei scrieri pe produse (inclusiv stocul).
+// Versiunea unui produs este versiunea catalogului la ultima lui modificare (0 = nemodificat de la pornire),
+// deci un ETag se poate verifica fara sa citim produsul. Versiunile sunt doar in memorie: ETag-urile contin
+// un id al pornirii, ca dupa un restart sa nu mai fie recunoscute.
+@Component
+public class CatalogVersions {
+
+    private final String startupId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final ConcurrentMap<Long, Long> versionsByProductId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> productIdsByCode = new ConcurrentHashMap<>();
+
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    public String getCatalogETag(long catalogVersion) {
+        return toETag(catalogVersion);
+    }
+
+    // null daca nu stim inca ce produs are codul dat
+    public String getProductETag(String productCode) {
+        Long productId = productIdsByCode.get(productCode);
+        return productId == null ? null : toETag(getProductVersion(productId));
+    }
+
+    // ETag-ul pentru un produs tocmai citit; null daca produsul s-a schimbat dupa catalogVersionBeforeRead,
+    // pentru ca atunci nu stim daca am citit valoarea veche sau pe cea noua
+    public String getProductETag(String productCode, long productId, long catalogVersionBeforeRead) {
+        productIdsByCode.put(productCode, productId);
+        long productVersion = getProductVersion(productId);
+        return productVersion > catalogVersionBeforeRead ? null : toETag(productVersion);
+    }
+
+    public void productChanged(long productId) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    incrementVersion(productId);
+                }
+            });
+        } else {
+            incrementVersion(productId);
+        }
+    }
+
+    // un produs nou poate refolosi codul unuia sters, deci codul trebuie legat de noul id
+    public void productAdded(String productCode, long productId) {
+        productIdsByCode.put(productCode, productId);
+        productChanged(productId);
+    }
+
+    private void incrementVersion(long productId) {
+        long newVersion = catalogVersion.incrementAndGet();
+        versionsByProductId.merge(productId, newVersion, Math::max);
+    }
+
+    private long getProductVersion(long productId) {
+        return versionsByProductId.getOrDefault(productId, 0L);
+    }
+
+    private String toETag(long version) {
+        return "\"" + startupId + "-" + version + "\"";
+    }
+}
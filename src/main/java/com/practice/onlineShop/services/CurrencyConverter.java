@@ -0,0 +1,139 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.vos.ProductVo;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.*;
+
+// Conversia preturilor (in unitati minore) intre monede. Cursurile sunt date fata de EUR si tinute intr-un tabel
+// imutabil, inlocuit dintr-o bucata la updateRates: o conversie vede mereu cursuri din acelasi set. Pentru fiecare
+// pereche de monede tabelul are deja fractia numarator/numitor, deci o conversie este o inmultire si o impartire
+// pe long; BigDecimal se foloseste doar la refresh si daca produsul ar depasi long.
+@Component
+@Endpoint(id = "currencyrates")
+public class CurrencyConverter {
+
+    // cursurile se rotunjesc la 6 zecimale, ca fractiile sa incapa in long
+    private static final int RATE_SCALE = 6;
+    private static final Currencies[] CURRENCIES = Currencies.values();
+
+    private volatile Rates rates;
+
+    public CurrencyConverter(Environment environment) {
+        Map<Currencies, BigDecimal> ratesPerEuro = new EnumMap<>(Currencies.class);
+        for(Currencies currency : CURRENCIES){
+            ratesPerEuro.put(currency, environment.getRequiredProperty("shop.currency.rates." + currency.name(), BigDecimal.class));
+        }
+        this.rates = new Rates(1, ratesPerEuro);
+    }
+
+    // inlocuieste toate cursurile deodata; trebuie sa contina fiecare moneda
+    public synchronized void updateRates(Map<Currencies, BigDecimal> ratesPerEuro) {
+        rates = new Rates(rates.version + 1, ratesPerEuro);
+    }
+
+    public Rates getRates() {
+        return rates;
+    }
+
+    public long convert(long amount, Currencies from, Currencies to) {
+        return rates.convert(amount, from, to);
+    }
+
+    // ProductVo-ul primit poate fi partajat (ProductCache), deci pretul convertit ajunge intr-o copie
+    public ProductVo convert(ProductVo productVo, Currencies to) {
+        return rates.convert(productVo, to);
+    }
+
+    // toata lista se converteste cu acelasi set de cursuri
+    public void convertAll(List<ProductVo> products, Currencies to) {
+        if(to == null){
+            return;
+        }
+        Rates currentRates = rates;
+        products.replaceAll(productVo -> currentRates.convert(productVo, to));
+    }
+
+    @ReadOperation
+    public Map<String, Object> currentRates() {
+        Rates currentRates = rates;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("version", currentRates.version);
+        result.put("ratesPerEuro", currentRates.ratesPerEuro);
+        return result;
+    }
+
+    public static final class Rates {
+        private final long version;
+        private final Map<Currencies, BigDecimal> ratesPerEuro;
+        // amount[to] = amount[from] * numerators[from][to] / denominators[from][to]
+        private final long[][] numerators = new long[CURRENCIES.length][CURRENCIES.length];
+        private final long[][] denominators = new long[CURRENCIES.length][CURRENCIES.length];
+
+        private Rates(long version, Map<Currencies, BigDecimal> ratesPerEuro) {
+            this.version = version;
+            Map<Currencies, BigDecimal> scaledRates = new EnumMap<>(Currencies.class);
+            for(Currencies currency : CURRENCIES){
+                BigDecimal rate = ratesPerEuro.get(currency);
+                if(rate == null || rate.signum() <= 0){
+                    throw new IllegalArgumentException("Missing or invalid rate for " + currency);
+                }
+                scaledRates.put(currency, rate.setScale(RATE_SCALE, RoundingMode.HALF_EVEN));
+            }
+            this.ratesPerEuro = Collections.unmodifiableMap(scaledRates);
+
+            for(Currencies from : CURRENCIES){
+                for(Currencies to : CURRENCIES){
+                    BigInteger numerator = scaledRates.get(to).unscaledValue().multiply(BigInteger.TEN.pow(to.getFractionDigits()));
+                    BigInteger denominator = scaledRates.get(from).unscaledValue().multiply(BigInteger.TEN.pow(from.getFractionDigits()));
+                    BigInteger gcd = numerator.gcd(denominator);
+                    numerators[from.ordinal()][to.ordinal()] = numerator.divide(gcd).longValueExact();
+                    denominators[from.ordinal()][to.ordinal()] = denominator.divide(gcd).longValueExact();
+                }
+            }
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public BigDecimal getRatePerEuro(Currencies currency) {
+            return ratesPerEuro.get(currency);
+        }
+
+        // rotunjire HALF_EVEN la unitatea minora a monedei tinta
+        public long convert(long amount, Currencies from, Currencies to) {
+            if(from == to){
+                return amount;
+            }
+            long numerator = numerators[from.ordinal()][to.ordinal()];
+            long denominator = denominators[from.ordinal()][to.ordinal()];
+            if(Math.abs(amount) > Long.MAX_VALUE / numerator){
+                return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(numerator))
+                        .divide(BigDecimal.valueOf(denominator), 0, RoundingMode.HALF_EVEN).longValueExact();
+            }
+            long product = amount * numerator;
+            long quotient = product / denominator;
+            long remainder = Math.abs(product % denominator);
+            if(remainder * 2 > denominator || (remainder * 2 == denominator && (quotient & 1) != 0)){
+                quotient += product < 0 ? -1 : 1;
+            }
+            return quotient;
+        }
+
+        public ProductVo convert(ProductVo productVo, Currencies to) {
+            if(to == null || productVo.getCurrency() == null || productVo.getCurrency() == to){
+                return productVo;
+            }
+            return new ProductVo(productVo.getId(), productVo.getCode(), productVo.getDescription(),
+                    convert(productVo.getPrice(), productVo.getCurrency(), to), productVo.getStock(), productVo.isValid(), to);
+        }
+    }
+}
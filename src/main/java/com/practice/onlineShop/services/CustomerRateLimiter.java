@@ -0,0 +1,192 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.Roles;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cate un token bucket pentru fiecare client, fara lock-uri. Bucket-ul este tinut ca un singur long, momentul
+// "teoretic" la care s-ar goli (GCRA): o cerere il muta cu un interval mai departe printr-un CAS si este refuzata
+// daca ar depasi acum + burst intervale. Limita vine din rolurile user-ului, dar doar daca sunt deja in
+// UserRolesCache (fara SELECT); pana atunci se aplica limita implicita. Un lot de comenzi consuma cate un token
+// pentru fiecare comanda. Bucket-urile pline, nefolosite de idle-eviction-ms, sunt scoase periodic.
+@Component
+public class CustomerRateLimiter {
+
+    private static final Roles[] ROLES = Roles.values();
+
+    private final UserRolesCache userRolesCache;
+    private final ConcurrentMap<Long, Bucket> bucketsByCustomerId = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Limit defaultLimit;
+    // limita pentru fiecare combinatie de roluri (indexata cu masca rolurilor): cea mai generoasa dintre roluri
+    private final Limit[] limitsByRoleMask;
+    private final long idleEvictionNanos;
+    private final Counter rejectedCounter;
+
+    public CustomerRateLimiter(UserRolesCache userRolesCache, MeterRegistry meterRegistry, Environment environment) {
+        this.userRolesCache = userRolesCache;
+        this.enabled = environment.getProperty("shop.rate-limit.enabled", Boolean.class, true);
+        this.defaultLimit = readLimit(environment, "shop.rate-limit.default", null);
+        this.idleEvictionNanos = TimeUnit.MILLISECONDS.toNanos(environment.getProperty("shop.rate-limit.idle-eviction-ms", Long.class, 600000L));
+
+        Limit[] limitsByRole = new Limit[ROLES.length];
+        for(Roles role : ROLES){
+            limitsByRole[role.ordinal()] = readLimit(environment, "shop.rate-limit.roles." + role.name(), defaultLimit);
+        }
+        this.limitsByRoleMask = new Limit[1 << ROLES.length];
+        for(int roleMask = 0; roleMask < limitsByRoleMask.length; roleMask++){
+            Limit limit = null;
+            for(Roles role : ROLES){
+                Limit roleLimit = limitsByRole[role.ordinal()];
+                if((roleMask & role.mask()) != 0 && (limit == null || roleLimit.isMoreGenerousThan(limit))){
+                    limit = roleLimit;
+                }
+            }
+            limitsByRoleMask[roleMask] = limit != null ? limit : defaultLimit;
+        }
+
+        this.rejectedCounter = Counter.builder("shop.rate-limit.rejected").register(meterRegistry);
+        meterRegistry.gauge("shop.rate-limit.buckets", bucketsByCustomerId, Map::size);
+    }
+
+    // 0 daca cererea este acceptata, altfel cate nanosecunde trebuie sa astepte clientul
+    public long tryAcquire(long customerId) {
+        return tryAcquire(customerId, 1);
+    }
+
+    public long tryAcquire(long customerId, int permits) {
+        if(!enabled){
+            return 0;
+        }
+        Bucket bucket = getBucket(customerId);
+        return acquire(bucket, getLimit(customerId, bucket), permits, System.nanoTime());
+    }
+
+    // toate sau nimic: daca un client este peste limita, token-urile deja luate de la ceilalti sunt returnate
+    public long tryAcquireAll(Map<Long, Integer> permitsByCustomerId) {
+        if(!enabled){
+            return 0;
+        }
+        long now = System.nanoTime();
+        List<Bucket> chargedBuckets = new ArrayList<>(permitsByCustomerId.size());
+        List<Long> chargedNanos = new ArrayList<>(permitsByCustomerId.size());
+        for(Map.Entry<Long, Integer> permits : permitsByCustomerId.entrySet()){
+            Bucket bucket = getBucket(permits.getKey());
+            Limit limit = getLimit(permits.getKey(), bucket);
+            long waitNanos = acquire(bucket, limit, permits.getValue(), now);
+            if(waitNanos > 0){
+                for(int i = 0; i < chargedBuckets.size(); i++){
+                    chargedBuckets.get(i).emptyAt.addAndGet(-chargedNanos.get(i));
+                }
+                return waitNanos;
+            }
+            chargedBuckets.add(bucket);
+            chargedNanos.add(limit.intervalNanos * permits.getValue());
+        }
+        return 0;
+    }
+
+    // un client care a ajuns la un bucket scos chiar atunci consuma din el; bucket-ul era oricum plin
+    @Scheduled(fixedDelayString = "${shop.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long idleSince = System.nanoTime() - idleEvictionNanos;
+        bucketsByCustomerId.values().removeIf(bucket -> bucket.emptyAt.get() - idleSince < 0);
+    }
+
+    int getBucketCount() {
+        return bucketsByCustomerId.size();
+    }
+
+    private Bucket getBucket(long customerId) {
+        Bucket bucket = bucketsByCustomerId.get(customerId);
+        if(bucket == null){
+            bucket = bucketsByCustomerId.computeIfAbsent(customerId, id -> new Bucket(System.nanoTime()));
+        }
+        return bucket;
+    }
+
+    // rolurile se citesc din cache la fiecare cerere, deci o schimbare de rol ajunge si la un bucket existent;
+    // cand rolurile ies din cache ramane ultima limita cunoscuta
+    private Limit getLimit(long customerId, Bucket bucket) {
+        int roleMask = userRolesCache.peekRoleMask(customerId);
+        if(roleMask < 0){
+            Limit limit = bucket.limit;
+            return limit != null ? limit : defaultLimit;
+        }
+        Limit limit = limitsByRoleMask[roleMask];
+        if(bucket.limit != limit){
+            bucket.limit = limit;
+        }
+        return limit;
+    }
+
+    private long acquire(Bucket bucket, Limit limit, int permits, long now) {
+        long chargedNanos = limit.intervalNanos * permits;
+        AtomicLong emptyAt = bucket.emptyAt;
+        while(true){
+            long currentEmptyAt = emptyAt.get();
+            long nextEmptyAt = Math.max(currentEmptyAt, now) + chargedNanos;
+            long waitNanos = nextEmptyAt - now - limit.burstNanos;
+            if(waitNanos > 0){
+                rejectedCounter.increment();
+                return waitNanos;
+            }
+            if(emptyAt.compareAndSet(currentEmptyAt, nextEmptyAt)){
+                return 0;
+            }
+        }
+    }
+
+    private static Limit readLimit(Environment environment, String prefix, Limit fallback) {
+        Double requestsPerSecond = environment.getProperty(prefix + ".requests-per-second", Double.class);
+        Integer burst = environment.getProperty(prefix + ".burst", Integer.class);
+        if(fallback != null && requestsPerSecond == null && burst == null){
+            return fallback;
+        }
+        double rate = requestsPerSecond != null ? requestsPerSecond : fallback != null ? fallback.requestsPerSecond : 20;
+        int capacity = burst != null ? burst : fallback != null ? fallback.burst : 40;
+        if(rate <= 0 || capacity <= 0){
+            throw new IllegalStateException(prefix + ": requests-per-second si burst trebuie sa fie pozitive");
+        }
+        return new Limit(rate, capacity);
+    }
+
+    private static final class Bucket {
+        private final AtomicLong emptyAt;
+        // ultima limita data de rolurile din UserRolesCache; null pana cand rolurile ajung in cache
+        private volatile Limit limit;
+
+        private Bucket(long now) {
+            this.emptyAt = new AtomicLong(now);
+        }
+    }
+
+    private static final class Limit {
+        private final double requestsPerSecond;
+        private final int burst;
+        private final long intervalNanos;
+        private final long burstNanos;
+
+        private Limit(double requestsPerSecond, int burst) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.burst = burst;
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond));
+            this.burstNanos = intervalNanos * burst;
+        }
+
+        private boolean isMoreGenerousThan(Limit other) {
+            return intervalNanos < other.intervalNanos || intervalNanos == other.intervalNanos && burst > other.burst;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "shop.stock.ledger.enabled", havingValue = "false", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DatabaseStockStore implements StockStore {
+
+    private final ProductRepository productRepository;
+
+    @Override
+    public boolean tryReserve(long productId, int quantity) {
+        return productRepository.decrementStockIfAvailable(productId, quantity) == 1;
+    }
+
+    @Override
+    public void release(long productId, int quantity) {
+        productRepository.incrementStock(productId, quantity);
+    }
+
+    @Override
+    public void add(long productId, int quantity) {
+        productRepository.incrementStock(productId, quantity);
+    }
+
+    @Override
+    public void set(Product product, int stock) {
+        product.setStock(stock);
+    }
+
+    @Override
+    public void evict(long productId) {
+    }
+}
@@ -0,0 +1,205 @@
+package com.practice.onlineShop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.practice.onlineShop.entities.IdempotencyRecord;
+import com.practice.onlineShop.exceptions.IdempotencyKeyReusedException;
+import com.practice.onlineShop.exceptions.OrderIntakeFullException;
+import com.practice.onlineShop.repositories.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+// Tine minte rezultatul cererilor trimise cu Idempotency-Key: o cerere repetata primeste rezultatul primei executii,
+// iar cererile concurente cu aceeasi cheie asteapta executia in curs in loc sa o porneasca din nou.
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public interface IdempotentCall {
+        void run() throws Exception;
+    }
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, IdempotentResult> resultsByKey = new ConcurrentHashMap<>();
+    private final Queue<String> keysInInsertionOrder = new ConcurrentLinkedQueue<>();
+
+    @Value("${shop.idempotency.max-keys:100000}")
+    private int maxKeys;
+
+    @Value("${shop.idempotency.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    @Value("${shop.idempotency.persistent:false}")
+    private boolean persistent;
+
+    public void execute(String key, Object request, IdempotentCall call) throws Exception {
+        execute(key, request, false, call);
+    }
+
+    // commitsOnItsOwn: apelul isi scrie rezultatul in tranzactia altui fir (OrderIntakePipeline), deci nu il includem
+    // in tranzactia in care se salveaza cheia
+    public void execute(String key, Object request, boolean commitsOnItsOwn, IdempotentCall call) throws Exception {
+        IdempotentResult result = new IdempotentResult(request, System.currentTimeMillis());
+        IdempotentResult existingResult;
+        while((existingResult = resultsByKey.putIfAbsent(key, result)) != null){
+            if(!existingResult.isExpired(System.currentTimeMillis())){
+                existingResult.replay(request);
+                return;
+            }
+            resultsByKey.remove(key, existingResult);
+        }
+        keysInInsertionOrder.add(key);
+        evictOldestKeys();
+
+        try {
+            if(persistent){
+                executeAndPersist(key, request, commitsOnItsOwn, call);
+            } else {
+                call.run();
+            }
+            result.outcome.complete(null);
+        } catch (RuntimeException | Error | OrderIntakeFullException e) {
+            // erorile neasteptate si refuzurile temporare nu sunt memorate, clientul poate reincerca cu aceeasi cheie
+            resultsByKey.remove(key, result);
+            result.outcome.completeExceptionally(e);
+            throw e;
+        } catch (Exception e) {
+            result.outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shop.idempotency.cleanup-interval-ms:60000}")
+    public void removeExpiredKeys() {
+        long now = System.currentTimeMillis();
+        resultsByKey.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+        keysInInsertionOrder.removeIf(key -> !resultsByKey.containsKey(key));
+        if(persistent){
+            transactionTemplate.execute(status -> idempotencyRecordRepository.deleteAllCreatedBefore(now - ttlMillis));
+        }
+    }
+
+    private void executeAndPersist(String key, Object request, boolean commitsOnItsOwn, IdempotentCall call) throws Exception {
+        String requestDigest = digest(request);
+        Optional<IdempotencyRecord> recordOptional = idempotencyRecordRepository.findById(key);
+        if(recordOptional.isPresent() && recordOptional.get().getCreatedAt() >= System.currentTimeMillis() - ttlMillis){
+            if(!requestDigest.equals(recordOptional.get().getRequestDigest())){
+                throw new IdempotencyKeyReusedException();
+            }
+            return;
+        }
+        if(commitsOnItsOwn){
+            // apelul face commit singur, deci cheia se salveaza dupa el, intr-o tranzactie separata; firul nu tine o
+            // tranzactie si o conexiune deschise cat asteapta. Daca salvarea cheii pica, comanda ramane scrisa, iar
+            // cheia este tinuta doar in memorie: o reincercare dupa o repornire poate scrie comanda din nou
+            call.run();
+            try {
+                transactionTemplate.execute(status -> saveRecord(recordOptional, key, requestDigest));
+            } catch (RuntimeException e) {
+                meterRegistry.counter("shop.idempotency.persist.failures").increment();
+            }
+            return;
+        }
+        // altfel cheia se salveaza in aceeasi tranzactie cu comanda, deci nu poate exista una fara cealalta
+        try {
+            transactionTemplate.execute(status -> {
+                try {
+                    call.run();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new CheckedExceptionWrapper(e);
+                }
+                return saveRecord(recordOptional, key, requestDigest);
+            });
+        } catch (CheckedExceptionWrapper e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private IdempotencyRecord saveRecord(Optional<IdempotencyRecord> recordOptional, String key, String requestDigest) {
+        IdempotencyRecord record = recordOptional.orElseGet(IdempotencyRecord::new);
+        record.setIdempotencyKey(key);
+        record.setRequestDigest(requestDigest);
+        record.setCreatedAt(System.currentTimeMillis());
+        return idempotencyRecordRepository.save(record);
+    }
+
+    // SHA-256 peste JSON-ul cererii, cu cheile map-urilor sortate ca doua cereri egale sa dea acelasi JSON
+    private String digest(Object request) {
+        try {
+            ObjectWriter writer = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(writer.writeValueAsBytes(request));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void evictOldestKeys() {
+        Iterator<String> iterator = keysInInsertionOrder.iterator();
+        while(resultsByKey.size() > maxKeys && iterator.hasNext()){
+            String oldestKey = iterator.next();
+            IdempotentResult oldestResult = resultsByKey.get(oldestKey);
+            if(oldestResult == null){
+                iterator.remove();
+            } else if(oldestResult.outcome.isDone()){
+                iterator.remove();
+                resultsByKey.remove(oldestKey, oldestResult);
+            }
+        }
+    }
+
+    private class IdempotentResult {
+        private final Object request;
+        private final long createdAt;
+        private final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+        private IdempotentResult(Object request, long createdAt) {
+            this.request = request;
+            this.createdAt = createdAt;
+        }
+
+        private boolean isExpired(long now) {
+            return outcome.isDone() && createdAt < now - ttlMillis;
+        }
+
+        private void replay(Object otherRequest) throws Exception {
+            if(!request.equals(otherRequest)){
+                throw new IdempotencyKeyReusedException();
+            }
+            try {
+                outcome.get();
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof Error){
+                    throw (Error) e.getCause();
+                }
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+
+    private static class CheckedExceptionWrapper extends RuntimeException {
+        private CheckedExceptionWrapper(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.aspects.RequiresRole;
+import com.practice.onlineShop.exceptions.*;
+import com.practice.onlineShop.mappers.OrderMapper;
+import com.practice.onlineShop.vos.OrderResultVO;
+import com.practice.onlineShop.vos.OrderVO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.practice.onlineShop.enums.Roles.*;
+
+// Comenzile validate sunt puse intr-o coada limitata; un singur fir le scoate in loturi (max-batch-size comenzi sau
+// max-wait-ms) si le scrie intr-o singura tranzactie, apoi raspunde fiecarui apelant prin CompletableFuture.
+// Un apelant a carui comanda nu a fost luata intr-un lot in result-timeout-ms primeste 503 ca la coada plina.
+@Service
+@ConditionalOnProperty(name = "shop.order.group-commit.enabled", havingValue = "true")
+public class OrderIntakePipeline {
+
+    private final OrderService orderService;
+    private final OrderMapper orderMapper;
+    private final BlockingQueue<PendingOrder> pendingOrders;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long resultTimeoutMillis;
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer commitTimer;
+    private final Counter rejectedOrdersCounter;
+    private final Counter timedOutOrdersCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public OrderIntakePipeline(OrderService orderService, OrderMapper orderMapper, MeterRegistry meterRegistry,
+                               @Value("${shop.order.group-commit.queue-capacity:10000}") int queueCapacity,
+                               @Value("${shop.order.group-commit.max-batch-size:100}") int maxBatchSize,
+                               @Value("${shop.order.group-commit.max-wait-ms:5}") long maxWaitMillis,
+                               @Value("${shop.order.group-commit.result-timeout-ms:10000}") long resultTimeoutMillis) {
+        this.orderService = orderService;
+        this.orderMapper = orderMapper;
+        this.pendingOrders = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.resultTimeoutMillis = resultTimeoutMillis;
+
+        this.batchSizeSummary = DistributionSummary.builder("shop.order.intake.batch.size").register(meterRegistry);
+        this.commitTimer = Timer.builder("shop.order.intake.commit").register(meterRegistry);
+        this.rejectedOrdersCounter = Counter.builder("shop.order.intake.rejected").register(meterRegistry);
+        this.timedOutOrdersCounter = Counter.builder("shop.order.intake.timed-out").register(meterRegistry);
+        meterRegistry.gauge("shop.order.intake.queue.size", pendingOrders, BlockingQueue::size);
+    }
+
+    @RequiresRole(CLIENT)
+    public void submit(OrderVO orderVO) throws InvalidProductsException, InvalidProductIdException, NotEnoughStockException, OrderIntakeFullException {
+        orderMapper.validateOrder(orderVO);
+
+        PendingOrder pendingOrder = new PendingOrder(orderVO);
+        if(!running || !pendingOrders.offer(pendingOrder)){
+            rejectedOrdersCounter.increment();
+            throw new OrderIntakeFullException();
+        }
+
+        OrderResultVO result;
+        try {
+            try {
+                result = pendingOrder.result.get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 503 doar daca firul nu a luat-o inca si deci nu se mai scrie; o comanda deja intr-un lot in curs
+                // poate fi scrisa, asa ca asteptam rezultatul lotului (firul completeaza mereu rezultatul)
+                if(pendingOrders.remove(pendingOrder)){
+                    timedOutOrdersCounter.increment();
+                    throw new OrderIntakeFullException();
+                }
+                result = pendingOrder.result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        if(result.getError() == null){
+            return;
+        }
+        switch (result.getError()){
+            case INVALID_PRODUCT_ID:
+                throw new InvalidProductIdException();
+            case NOT_ENOUGH_STOCK:
+                throw new NotEnoughStockException();
+            default:
+                throw new InvalidProductsException();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeOrders, "order-intake-writer");
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writerThread.join();
+        PendingOrder leftoverOrder;
+        while((leftoverOrder = pendingOrders.poll()) != null){
+            leftoverOrder.result.completeExceptionally(new IllegalStateException("Order intake was stopped"));
+        }
+    }
+
+    private void writeOrders() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        try {
+            writeOrders(batch);
+        } finally {
+            // firul s-a oprit (si daca a fost intrerupt): comenzile ramase sunt refuzate, nu lasate sa astepte
+            running = false;
+            IllegalStateException stopped = new IllegalStateException("Order intake was stopped");
+            failOrders(batch, stopped);
+            PendingOrder leftoverOrder;
+            while((leftoverOrder = pendingOrders.poll()) != null){
+                leftoverOrder.result.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    // la oprire golim coada inainte sa iesim, ca niciun apelant sa nu astepte la nesfarsit
+    private void writeOrders(List<PendingOrder> batch) {
+        while(running || !pendingOrders.isEmpty()){
+            try {
+                PendingOrder firstOrder = pendingOrders.poll(100, TimeUnit.MILLISECONDS);
+                if(firstOrder == null){
+                    continue;
+                }
+                batch.add(firstOrder);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while(batch.size() < maxBatchSize){
+                    long remainingNanos = deadline - System.nanoTime();
+                    PendingOrder nextOrder = remainingNanos > 0 ? pendingOrders.poll(remainingNanos, TimeUnit.NANOSECONDS) : pendingOrders.poll();
+                    if(nextOrder == null){
+                        break;
+                    }
+                    batch.add(nextOrder);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                // orice eroare (si Error, nu doar RuntimeException) este trimisa apelantilor lotului; firul continua
+                failOrders(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingOrder> batch) {
+        List<OrderVO> orderVOs = new ArrayList<>(batch.size());
+        for(PendingOrder pendingOrder : batch){
+            orderVOs.add(pendingOrder.orderVO);
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<OrderResultVO> results = orderService.placeOrders(orderVOs);
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for(int i = 0; i < batch.size(); i++){
+                batch.get(i).result.complete(results.get(i));
+            }
+        } finally {
+            batchSizeSummary.record(batch.size());
+        }
+    }
+
+    private void failOrders(List<PendingOrder> batch, Throwable cause) {
+        for(PendingOrder pendingOrder : batch){
+            pendingOrder.result.completeExceptionally(cause);
+        }
+    }
+
+    private static class PendingOrder {
+        private final OrderVO orderVO;
+        private final CompletableFuture<OrderResultVO> result = new CompletableFuture<>();
+
+        private PendingOrder(OrderVO orderVO) {
+            this.orderVO = orderVO;
+        }
+    }
+}
@@ -1,18 +1,30 @@
 package com.practice.onlineShop.services;
 
+import com.practice.onlineShop.aspects.RequiresRole;
+import com.practice.onlineShop.aspects.RetryOnConflict;
 import com.practice.onlineShop.entities.Orders;
 import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.enums.DeliveryOutcomes;
+import com.practice.onlineShop.enums.OrderStates;
+import com.practice.onlineShop.enums.ReturnOutcomes;
 import com.practice.onlineShop.exceptions.*;
 import com.practice.onlineShop.mappers.OrderMapper;
 import com.practice.onlineShop.repositories.OrderRepository;
+import com.practice.onlineShop.repositories.OrderRepository.OrderIdAndState;
+import com.practice.onlineShop.vos.DeliveryResultVO;
+import com.practice.onlineShop.vos.OrderResultVO;
 import com.practice.onlineShop.vos.OrderVO;
+import com.practice.onlineShop.vos.ReturnResultVO;
 import lombok.RequiredArgsConstructor;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+
+import static com.practice.onlineShop.enums.OrderErrors.*;
+import static com.practice.onlineShop.enums.OrderStates.*;
+import static com.practice.onlineShop.enums.Roles.*;
 
 @Service
 @RequiredArgsConstructor
@@ -21,89 +33,233 @@ public class OrderService {
     private final OrderMapper orderMapper;
     private final StockService stockService;
 
+    @RequiresRole(CLIENT)
+    @Transactional(rollbackOn = Exception.class)
     public void addOrder(OrderVO orderVO) throws InvalidCustomerIdException, InvalidProductsException, InvalidProductIdException, NotEnoughStockException {
-        validateStock(orderVO);
-
         Orders order = orderMapper.toEntity(orderVO);
-        order.getOrderItems().forEach(orderItem -> {
-            int oldProductStock = orderItem.getProduct().getStock();
-            int productId = (int) orderItem.getProduct().getId();
-            int sellStock = orderVO.getProductIdsToQuantity().get(productId);
-            orderItem.getProduct().setStock(oldProductStock - sellStock);
-        });
+        stockService.reserveStock(orderVO.getProductIdsToQuantity());
         orderRepository.save(order);
     }
 
-    @Transactional
+    @RequiresRole(CLIENT)
+    @Transactional(rollbackOn = Exception.class)
+    public List<OrderResultVO> addOrders(List<OrderVO> orderVOs) {
+        return placeOrders(orderVOs);
+    }
+
+    // fiecare comanda este acceptata sau respinsa separat; cele acceptate sunt salvate impreuna (insert-uri in batch)
+    // nu trece prin SecurityAspect: apelantul (addOrders sau OrderIntakePipeline) a verificat deja user-ii
+    @Transactional(rollbackOn = Exception.class)
+    public List<OrderResultVO> placeOrders(List<OrderVO> orderVOs) {
+        List<Integer> productIds = new ArrayList<>();
+        for(OrderVO orderVO : orderVOs){
+            if(orderVO.getProductIdsToQuantity() != null){
+                productIds.addAll(orderVO.getProductIdsToQuantity().keySet());
+            }
+        }
+        Map<Long, Product> productsById = orderMapper.loadProducts(productIds);
+
+        List<OrderResultVO> results = new ArrayList<>(orderVOs.size());
+        List<OrderResultVO> acceptedResults = new ArrayList<>();
+        List<Orders> acceptedOrders = new ArrayList<>();
+        for(OrderVO orderVO : orderVOs){
+            OrderResultVO result = new OrderResultVO();
+            try {
+                Orders order = orderMapper.toEntity(orderVO, productsById);
+                if(stockService.tryReserveStock(orderVO.getProductIdsToQuantity())){
+                    acceptedOrders.add(order);
+                    acceptedResults.add(result);
+                } else {
+                    result.setError(NOT_ENOUGH_STOCK);
+                }
+            } catch (InvalidProductsException | InvalidCustomerIdException e) {
+                result.setError(INVALID_PRODUCTS);
+            } catch (InvalidProductIdException e) {
+                result.setError(INVALID_PRODUCT_ID);
+            }
+            results.add(result);
+        }
+
+        orderRepository.saveAll(acceptedOrders);
+        for(int i = 0; i < acceptedOrders.size(); i++){
+            acceptedResults.get(i).setOrderId(acceptedOrders.get(i).getId());
+        }
+        return results;
+    }
+
+    @RequiresRole(EXPEDITOR)
+    @Transactional(rollbackOn = Exception.class)
     public void deliver(Integer orderId, Long customerId) throws InvalidOrderIdException, OrderCanceledException {
         System.out.println("Customer-ul cu id-ul: " + customerId + " este in service!");
         throwExceptionIfOrderIDisAbsent(orderId);
 
-        Orders order = getOrderOrThrowException(orderId);
-        if(order.isCanceled()){
+        if(changeState(orderId, EnumSet.of(NEW), DELIVERED)){
+            return;
+        }
+        if(getOrderStateOrThrowException(orderId) == CANCELED){
             throw new OrderCanceledException();
         }
+        // DELIVERED sau RETURNED: comanda a fost deja livrata
+    }
 
+    // livreaza toate comenzile eligibile cu un singur UPDATE, apoi citeste starile intr-un singur SELECT pentru rezultat;
+    // comenzile deja livrate sau returnate apar ca DELIVERED, la fel ca la deliver
+    @RequiresRole(EXPEDITOR)
+    @Transactional(rollbackOn = Exception.class)
+    public List<DeliveryResultVO> deliverOrders(List<Integer> orderIds, Long customerId) {
+        Set<Long> distinctOrderIds = new HashSet<>();
+        for(Integer orderId : orderIds){
+            if(orderId != null){
+                distinctOrderIds.add(orderId.longValue());
+            }
+        }
+
+        Map<Long, OrderStates> statesById = new HashMap<>();
+        if(!distinctOrderIds.isEmpty()){
+            orderRepository.updateStates(distinctOrderIds, EnumSet.of(NEW), DELIVERED);
+            for(OrderIdAndState orderIdAndState : orderRepository.findStatesByIdIn(distinctOrderIds)){
+                statesById.put(orderIdAndState.getId(), orderIdAndState.getState());
+            }
+        }
 
-        order.setDelivered(true);
+        List<DeliveryResultVO> results = new ArrayList<>(orderIds.size());
+        for(Integer orderId : orderIds){
+            OrderStates state = orderId == null ? null : statesById.get(orderId.longValue());
+            results.add(new DeliveryResultVO(orderId, getDeliveryOutcome(state)));
+        }
+        return results;
     }
 
-    @Transactional
+    @RequiresRole(CLIENT)
+    @Transactional(rollbackOn = Exception.class)
     public void cancelOrder(Integer orderId, Long customerId) throws InvalidOrderIdException, OrderAlreadyDeliveredException {
         System.out.println("Customer-ul cu id-ul: "  + customerId + " este in service pentru a anula comanda " + orderId);
-
         throwExceptionIfOrderIDisAbsent(orderId);
-        Orders order = getOrderOrThrowException(orderId);
-        if(order.isDelivered()){
+
+        if(changeState(orderId, EnumSet.of(NEW), CANCELED)){
+            return;
+        }
+        OrderStates state = getOrderStateOrThrowException(orderId);
+        if(state == DELIVERED || state == RETURNED){
             throw new OrderAlreadyDeliveredException();
         }
-        order.setCanceled(true);
+        // CANCELED: comanda a fost deja anulata
     }
 
-    @Transactional
-    public void returnOrder(Integer orderId, Long customerId) throws InvalidOrderIdException, OrderNotDeliveredYetException, OrderCanceledException {
+    @RequiresRole(CLIENT)
+    @Transactional(rollbackOn = Exception.class)
+    public void returnOrder(Integer orderId, Long customerId) throws InvalidOrderIdException, OrderNotDeliveredYetException, OrderCanceledException, OrderAlreadyReturnedException {
         System.out.println("Customer-ul cu id-ul: "  + customerId + " este in service pentru a returna comanda " + orderId);
         throwExceptionIfOrderIDisAbsent(orderId);
-        Orders order = getOrderOrThrowException(orderId);
 
-        if(!order.isDelivered()){
+        if(!changeState(orderId, EnumSet.of(DELIVERED), RETURNED)){
+            OrderStates state = getOrderStateOrThrowException(orderId);
+            if(state == CANCELED){
+                throw new OrderCanceledException();
+            }
+            if(state == RETURNED){
+                throw new OrderAlreadyReturnedException();
+            }
             throw new OrderNotDeliveredYetException();
         }
-        if(order.isCanceled()){
-            throw new OrderCanceledException();
+
+        restoreStock(Collections.singleton(orderId.longValue()));
+    }
+
+    // returnarile de la sfarsitul zilei: un SELECT pentru stari, un UPDATE pentru toate comenzile livrate si
+    // o singura actualizare de stoc pe produs, adunata din toate comenzile returnate
+    @RequiresRole(EXPEDITOR)
+    @RetryOnConflict
+    @Transactional(rollbackOn = Exception.class)
+    public List<ReturnResultVO> returnOrders(List<Integer> orderIds, Long customerId) {
+        Set<Long> distinctOrderIds = new HashSet<>();
+        for(Integer orderId : orderIds){
+            if(orderId != null){
+                distinctOrderIds.add(orderId.longValue());
+            }
         }
-        order.setReturned(true);
 
-        order.getOrderItems().forEach(orderItem -> {
-            Product product = orderItem.getProduct();
-            int oldStock = product.getStock();
-            product.setStock(oldStock + orderItem.getQuantity());
+        Map<Long, OrderStates> statesById = new HashMap<>();
+        if(!distinctOrderIds.isEmpty()){
+            for(OrderIdAndState orderIdAndState : orderRepository.findStatesByIdIn(distinctOrderIds)){
+                statesById.put(orderIdAndState.getId(), orderIdAndState.getState());
+            }
+        }
+        Set<Long> deliveredOrderIds = new HashSet<>();
+        statesById.forEach((orderId, state) -> {
+            if(state == DELIVERED){
+                deliveredOrderIds.add(orderId);
+            }
         });
+
+        if(!deliveredOrderIds.isEmpty()){
+            // o returnare concurenta a apucat una din comenzi: reluam totul, altfel stocul ar fi refacut de doua ori
+            if(orderRepository.updateStates(deliveredOrderIds, EnumSet.of(DELIVERED), RETURNED) != deliveredOrderIds.size()){
+                throw new ObjectOptimisticLockingFailureException(Orders.class, deliveredOrderIds);
+            }
+            restoreStock(deliveredOrderIds);
+        }
+
+        List<ReturnResultVO> results = new ArrayList<>(orderIds.size());
+        Set<Long> returnedOrderIds = new HashSet<>();
+        for(Integer orderId : orderIds){
+            Long id = orderId == null ? null : orderId.longValue();
+            ReturnOutcomes outcome;
+            if(deliveredOrderIds.contains(id)){
+                // un id trimis de doua ori in acelasi lot este returnat o singura data
+                outcome = returnedOrderIds.add(id) ? ReturnOutcomes.RETURNED : ReturnOutcomes.ALREADY_RETURNED;
+            } else {
+                outcome = getReturnOutcome(statesById.get(id));
+            }
+            results.add(new ReturnResultVO(orderId, outcome));
+        }
+        return results;
     }
 
-    private void throwExceptionIfOrderIDisAbsent(Integer orderId) throws InvalidOrderIdException {
-        if(orderId == null){
-            throw new InvalidOrderIdException();
+    // stocul este refacut cu un singur UPDATE pe produs, in ordinea id-urilor produselor
+    private void restoreStock(Collection<Long> orderIds) {
+        orderRepository.findQuantitiesByProduct(orderIds).forEach(productQuantity ->
+                stockService.addStock(productQuantity.getProductId(), Math.toIntExact(productQuantity.getQuantity())));
+    }
+
+    private ReturnOutcomes getReturnOutcome(OrderStates state) {
+        if(state == null){
+            return ReturnOutcomes.UNKNOWN;
+        }
+        switch (state){
+            case CANCELED:
+                return ReturnOutcomes.CANCELED;
+            case RETURNED:
+                return ReturnOutcomes.ALREADY_RETURNED;
+            default:
+                return ReturnOutcomes.NOT_DELIVERED;
+        }
+    }
+
+    private DeliveryOutcomes getDeliveryOutcome(OrderStates state) {
+        if(state == null){
+            return DeliveryOutcomes.UNKNOWN;
         }
+        return state == CANCELED ? DeliveryOutcomes.CANCELED : DeliveryOutcomes.DELIVERED;
+    }
+
+    // un singur UPDATE conditionat: doua cereri concurente nu pot face amandoua aceeasi tranzitie
+    private boolean changeState(Integer orderId, Set<OrderStates> allowedStates, OrderStates newState) {
+        return orderRepository.updateState(orderId.longValue(), allowedStates, newState) == 1;
     }
 
-    private Orders getOrderOrThrowException(Integer orderId) throws InvalidOrderIdException{
-        Optional<Orders> ordersOptional = orderRepository.findById(orderId.longValue());
-        if(!ordersOptional.isPresent()){
+    private void throwExceptionIfOrderIDisAbsent(Integer orderId) throws InvalidOrderIdException {
+        if(orderId == null){
             throw new InvalidOrderIdException();
         }
-        return ordersOptional.get();
     }
 
-    private void validateStock(OrderVO orderVO) throws NotEnoughStockException {
-        Map<Integer, Integer> productIdsToQuantityMap = orderVO.getProductIdsToQuantity();
-        Set<Integer> productsIds = productIdsToQuantityMap.keySet();
-        for(Integer productId : productsIds){
-            Integer quantity = productIdsToQuantityMap.get(productId);
-            boolean havingEnoughStock = stockService.isHavingEnoughStock(productId, quantity);
-            if(!havingEnoughStock){
-                throw new NotEnoughStockException();
-            }
+    // folosit doar cand UPDATE-ul conditionat nu a modificat nimic, pentru a afla motivul
+    private OrderStates getOrderStateOrThrowException(Integer orderId) throws InvalidOrderIdException{
+        Optional<OrderStates> stateOptional = orderRepository.findStateById(orderId.longValue());
+        if(!stateOptional.isPresent()){
+            throw new InvalidOrderIdException();
         }
+        return stateOptional.get();
     }
 }
@@ -0,0 +1,120 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.exceptions.InvalidProductCodeException;
+import com.practice.onlineShop.vos.ProductVo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache read-through pentru getProduct, dupa codul produsului. Intrarile expira dupa ttl-ms, iar peste max-size
+// sunt scoase cele mai vechi. Scrierile invalideaza intrarea imediat si inca o data dupa commit, ca o citire
+// facuta inainte de commit sa nu ramana in cache. ProductVo-urile din cache sunt partajate: nu se modifica.
+@Component
+public class ProductCache {
+
+    public interface ProductLoader {
+        ProductVo load() throws InvalidProductCodeException;
+    }
+
+    private final BoundedTtlCache<String, ProductVo> productsByCode;
+    // codul sub care a fost incarcat fiecare produs si secventa ultimei invalidari dupa id; ambele au cel mult
+    // cate o intrare pe produs. O incarcare pornita inainte de o invalidare a aceluiasi id nu intra in cache.
+    private final ConcurrentMap<Long, String> codesById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Long> invalidationsById = new ConcurrentHashMap<>();
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    private final boolean enabled;
+
+    private final Counter hitsCounter;
+    private final Counter missesCounter;
+
+    public ProductCache(MeterRegistry meterRegistry,
+                        @Value("${shop.product.cache.enabled:true}") boolean enabled,
+                        @Value("${shop.product.cache.max-size:10000}") int maxSize,
+                        @Value("${shop.product.cache.ttl-ms:60000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.productsByCode = new BoundedTtlCache<>(maxSize, ttlMillis,
+                Counter.builder("shop.product.cache.evictions").register(meterRegistry));
+
+        this.hitsCounter = Counter.builder("shop.product.cache.hits").register(meterRegistry);
+        this.missesCounter = Counter.builder("shop.product.cache.misses").register(meterRegistry);
+        meterRegistry.gauge("shop.product.cache.size", productsByCode, BoundedTtlCache::size);
+    }
+
+    public ProductVo get(String productCode, ProductLoader loader) throws InvalidProductCodeException {
+        if(!enabled || productCode == null){
+            return loader.load();
+        }
+        ProductVo cachedProduct = productsByCode.get(productCode);
+        if(cachedProduct != null){
+            hitsCounter.increment();
+            return cachedProduct;
+        }
+        missesCounter.increment();
+
+        long sequenceBeforeLoad = invalidationSequence.get();
+        BoundedTtlCache.Entry<String, ProductVo> token = productsByCode.startLoad(productCode);
+        ProductVo product = null;
+        try {
+            product = loader.load();
+        } finally {
+            if(product == null){
+                productsByCode.cancelLoad(token);
+            }
+        }
+        // codul se publica inainte de verificare: invalidate(productId) fie il gaseste si scoate tokenul,
+        // fie lasa o secventa pe care o vedem aici
+        codesById.put(product.getId(), productCode);
+        if(invalidationsById.getOrDefault(product.getId(), 0L) > sequenceBeforeLoad){
+            productsByCode.cancelLoad(token);
+        } else {
+            productsByCode.finishLoad(token, product);
+        }
+        return product;
+    }
+
+    public void invalidate(String productCode) {
+        if(!enabled || productCode == null){
+            return;
+        }
+        productsByCode.invalidate(productCode);
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    productsByCode.invalidate(productCode);
+                }
+            });
+        }
+    }
+
+    public void invalidate(long productId) {
+        if(!enabled){
+            return;
+        }
+        evict(productId);
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(productId);
+                }
+            });
+        }
+    }
+
+    private void evict(long productId) {
+        invalidationsById.merge(productId, invalidationSequence.incrementAndGet(), Math::max);
+        String productCode = codesById.get(productId);
+        if(productCode != null){
+            productsByCode.invalidate(productCode);
+        }
+    }
+}
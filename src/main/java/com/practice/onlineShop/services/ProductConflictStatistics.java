@@ -0,0 +1,90 @@
+package com.practice.onlineShop.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Numara conflictele de @Version si reincercarile pe fiecare produs, ca sa vedem produsele "fierbinti".
+// Contoarele per produs nu sunt tag-uri Micrometer (catalogul e prea mare); se vad pe /actuator/productconflicts,
+// iar in Micrometer sunt doar totalurile.
+@Component
+@Endpoint(id = "productconflicts")
+public class ProductConflictStatistics {
+
+    private final ConcurrentMap<String, ProductConflicts> conflictsByProductCode = new ConcurrentHashMap<>();
+    private final Counter conflictsCounter;
+    private final Counter retriesCounter;
+    private final int maxTrackedProducts;
+
+    public ProductConflictStatistics(MeterRegistry meterRegistry,
+                                     @Value("${shop.product.retry.max-tracked-products:10000}") int maxTrackedProducts) {
+        this.conflictsCounter = Counter.builder("shop.product.conflicts").register(meterRegistry);
+        this.retriesCounter = Counter.builder("shop.product.retries").register(meterRegistry);
+        this.maxTrackedProducts = maxTrackedProducts;
+    }
+
+    public void recordConflict(String productCode) {
+        conflictsCounter.increment();
+        ProductConflicts productConflicts = getProductConflicts(productCode);
+        if(productConflicts != null){
+            productConflicts.conflicts.increment();
+        }
+    }
+
+    public void recordRetry(String productCode) {
+        retriesCounter.increment();
+        ProductConflicts productConflicts = getProductConflicts(productCode);
+        if(productConflicts != null){
+            productConflicts.retries.increment();
+        }
+    }
+
+    public long getConflicts(String productCode) {
+        ProductConflicts productConflicts = conflictsByProductCode.get(productCode);
+        return productConflicts == null ? 0 : productConflicts.conflicts.sum();
+    }
+
+    public long getRetries(String productCode) {
+        ProductConflicts productConflicts = conflictsByProductCode.get(productCode);
+        return productConflicts == null ? 0 : productConflicts.retries.sum();
+    }
+
+    // produsele ordonate descrescator dupa numarul de conflicte
+    @ReadOperation
+    public List<Map<String, Object>> hotProducts() {
+        List<Map<String, Object>> hotProducts = new ArrayList<>();
+        conflictsByProductCode.forEach((productCode, productConflicts) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("code", productCode);
+            entry.put("conflicts", productConflicts.conflicts.sum());
+            entry.put("retries", productConflicts.retries.sum());
+            hotProducts.add(entry);
+        });
+        hotProducts.sort(Comparator.comparing((Map<String, Object> entry) -> (Long) entry.get("conflicts")).reversed());
+        return hotProducts;
+    }
+
+    private ProductConflicts getProductConflicts(String productCode) {
+        if(productCode == null){
+            return null;
+        }
+        ProductConflicts productConflicts = conflictsByProductCode.get(productCode);
+        if(productConflicts == null && conflictsByProductCode.size() < maxTrackedProducts){
+            productConflicts = conflictsByProductCode.computeIfAbsent(productCode, code -> new ProductConflicts());
+        }
+        return productConflicts;
+    }
+
+    private static class ProductConflicts {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+    }
+}
@@ -0,0 +1,90 @@
+package com.practice.onlineShop.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.enums.ExportFormats;
+import com.practice.onlineShop.mappers.ProductMapper;
+import com.practice.onlineShop.vos.ProductVo;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// Exportul intregului catalog: produsele sunt citite cu un cursor forward-only si scrise pe rand in stream,
+// fiecare entitate fiind scoasa din sesiune dupa ce a fost scrisa, deci memoria nu creste cu numarul de produse.
+@Service
+public class ProductExportService {
+
+    private final EntityManager entityManager;
+    private final ProductMapper productMapper;
+    private final ObjectWriter productWriter;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int fetchSize;
+
+    public ProductExportService(EntityManager entityManager, ProductMapper productMapper, ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${shop.product.export.fetch-size:1000}") int fetchSize) {
+        this.entityManager = entityManager;
+        this.productMapper = productMapper;
+        // Jackson scrie in stream doar cand i se umple buffer-ul, nu dupa fiecare produs
+        this.productWriter = objectMapper.writerFor(ProductVo.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.fetchSize = fetchSize;
+    }
+
+    public void exportProducts(ExportFormats format, OutputStream outputStream) throws IOException {
+        export(format, outputStream, "select p from Product p order by p.id");
+    }
+
+    // doar produsele valide, ca array JSON (folosit pentru snapshot-ul catalogului)
+    public void exportValidProducts(OutputStream outputStream) throws IOException {
+        export(ExportFormats.JSON, outputStream, "select p from Product p where p.valid = true order by p.id");
+    }
+
+    private void export(ExportFormats format, OutputStream outputStream, String query) throws IOException {
+        try {
+            readOnlyTransactionTemplate.executeWithoutResult(status -> {
+                try (SequenceWriter sequenceWriter = createSequenceWriter(format, outputStream)) {
+                    writeProducts(sequenceWriter, query);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private SequenceWriter createSequenceWriter(ExportFormats format, OutputStream outputStream) throws IOException {
+        if(format == ExportFormats.JSON){
+            return productWriter.writeValuesAsArray(outputStream);
+        }
+        return productWriter.withRootValueSeparator("\n").writeValues(outputStream);
+    }
+
+    private void writeProducts(SequenceWriter sequenceWriter, String query) throws IOException {
+        Session session = entityManager.unwrap(Session.class);
+        try (ScrollableResults products = session.createQuery(query, Product.class)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            while(products.next()){
+                Product product = (Product) products.get(0);
+                sequenceWriter.write(productMapper.toVO(product));
+                session.detach(product);
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.practice.onlineShop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.practice.onlineShop.aspects.RequiresRole;
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.enums.ImportFormats;
+import com.practice.onlineShop.exceptions.InvalidImportFileException;
+import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.vos.ProductImportErrorVO;
+import com.practice.onlineShop.vos.ProductImportResultVO;
+import com.practice.onlineShop.vos.ProductVo;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.practice.onlineShop.enums.Roles.*;
+
+// Importul de produse dintr-un fisier trimis in corpul cererii: CSV cu header sau NDJSON (un ProductVo pe linie).
+// Fisierul se citeste linie cu linie; randurile valide se aduna in bucati de chunk-size, fiecare bucata fiind scrisa
+// intr-o tranzactie proprie (upsert dupa cod, INSERT/UPDATE trimise in loturi JDBC de jdbc-batch-size). Dupa fiecare
+// bucata sesiunea se goleste, deci memoria nu creste cu marimea fisierului. O bucata care pica nu le anuleaza pe cele
+// deja scrise: randurile ei apar ca erori in rezumat.
+@Service
+public class ProductImportService {
+
+    private static final List<String> REQUIRED_CSV_COLUMNS = Arrays.asList("code", "price", "currency");
+
+    private final EntityManager entityManager;
+    private final ProductRepository productRepository;
+    private final StockService stockService;
+    private final ProductCache productCache;
+    private final CatalogVersions catalogVersions;
+    private final ProductSearchIndex productSearchIndex;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int jdbcBatchSize;
+    private final int maxReportedErrors;
+
+    public ProductImportService(EntityManager entityManager, ProductRepository productRepository, StockService stockService,
+                                ProductCache productCache, CatalogVersions catalogVersions, ProductSearchIndex productSearchIndex,
+                                ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+                                @Value("${shop.product.import.chunk-size:1000}") int chunkSize,
+                                @Value("${shop.product.import.jdbc-batch-size:100}") int jdbcBatchSize,
+                                @Value("${shop.product.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.entityManager = entityManager;
+        this.productRepository = productRepository;
+        this.stockService = stockService;
+        this.productCache = productCache;
+        this.catalogVersions = catalogVersions;
+        this.productSearchIndex = productSearchIndex;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.jdbcBatchSize = jdbcBatchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    @RequiresRole(ADMIN)
+    public ProductImportResultVO importProducts(InputStream inputStream, Long customerId, ImportFormats format) throws IOException, InvalidImportFileException {
+        ProductImportResultVO result = new ProductImportResultVO();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        long rowNumber = 0;
+        Map<String, Integer> csvColumns = null;
+        if(format == ImportFormats.CSV){
+            String header = reader.readLine();
+            if(header == null){
+                return result;
+            }
+            rowNumber++;
+            csvColumns = readCsvHeader(header);
+        }
+
+        Session session = entityManager.unwrap(Session.class);
+        Integer previousJdbcBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(jdbcBatchSize);
+        try {
+            // dupa cod: acelasi cod de doua ori in aceeasi bucata scrie intai bucata, ca randurile sa se aplice in ordine
+            Map<String, ImportRow> chunk = new LinkedHashMap<>();
+            Map<String, Long> rowNumbersByCode = new HashMap<>();
+            String line;
+            while((line = reader.readLine()) != null){
+                rowNumber++;
+                if(line.trim().isEmpty()){
+                    continue;
+                }
+                result.setRowsRead(result.getRowsRead() + 1);
+                ImportRow row;
+                try {
+                    row = csvColumns == null ? parseJson(line) : parseCsv(line, csvColumns);
+                    validate(row.productVo);
+                } catch (InvalidRowException e) {
+                    addError(result, rowNumber, e.code, e.getMessage());
+                    continue;
+                }
+                String code = row.productVo.getCode();
+                if(chunk.size() >= chunkSize || chunk.containsKey(code)){
+                    writeChunk(chunk, rowNumbersByCode, result);
+                }
+                chunk.put(code, row);
+                rowNumbersByCode.put(code, rowNumber);
+            }
+            writeChunk(chunk, rowNumbersByCode, result);
+        } finally {
+            session.setJdbcBatchSize(previousJdbcBatchSize);
+        }
+        return result;
+    }
+
+    private void writeChunk(Map<String, ImportRow> chunk, Map<String, Long> rowNumbersByCode, ProductImportResultVO result) {
+        if(chunk.isEmpty()){
+            return;
+        }
+        try {
+            int[] insertedAndUpdated = transactionTemplate.execute(status -> upsert(chunk.values()));
+            result.setInserted(result.getInserted() + insertedAndUpdated[0]);
+            result.setUpdated(result.getUpdated() + insertedAndUpdated[1]);
+        } catch (RuntimeException e) {
+            String message = "Bucata de produse nu a putut fi salvata: " + e.getClass().getSimpleName();
+            for(String code : chunk.keySet()){
+                addError(result, rowNumbersByCode.get(code), code, message);
+            }
+        } finally {
+            // entitatile bucatii nu mai sunt necesare; fara clear sesiunea ar creste pana la sfarsitul fisierului
+            entityManager.clear();
+            chunk.clear();
+            rowNumbersByCode.clear();
+        }
+    }
+
+    private int[] upsert(Collection<ImportRow> rows) {
+        Map<String, Product> existingProductsByCode = new HashMap<>();
+        List<String> codes = new ArrayList<>(rows.size());
+        rows.forEach(row -> codes.add(row.productVo.getCode()));
+        for(Product product : productRepository.findAllByCodeIn(codes)){
+            existingProductsByCode.put(product.getCode(), product);
+        }
+
+        int inserted = 0;
+        int updated = 0;
+        for(ImportRow row : rows){
+            ProductVo productVo = row.productVo;
+            Product product = existingProductsByCode.get(productVo.getCode());
+            boolean isNew = product == null;
+            if(isNew){
+                product = new Product();
+                product.setCode(productVo.getCode());
+                product.setStock(productVo.getStock());
+            }
+            product.setDescription(productVo.getDescription());
+            product.setPrice(productVo.getPrice());
+            product.setValid(productVo.isValid());
+            product.setCurrency(productVo.getCurrency());
+            if(isNew){
+                entityManager.persist(product);
+                catalogVersions.productAdded(product.getCode(), product.getId());
+                inserted++;
+            } else {
+                // un fisier fara stoc (de ex. doar preturi) nu modifica stocul produselor existente
+                if(row.hasStock){
+                    stockService.setStock(product, productVo.getStock());
+                }
+                productCache.invalidate(product.getCode());
+                catalogVersions.productChanged(product.getId());
+                updated++;
+            }
+            productSearchIndex.productChanged(product);
+        }
+        entityManager.flush();
+        return new int[]{inserted, updated};
+    }
+
+    private Map<String, Integer> readCsvHeader(String header) throws InvalidImportFileException {
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsvLine(header);
+        for(int i = 0; i < names.size(); i++){
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if(!columns.keySet().containsAll(REQUIRED_CSV_COLUMNS)){
+            throw new InvalidImportFileException();
+        }
+        return columns;
+    }
+
+    private ImportRow parseJson(String line) throws InvalidRowException {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            if(!node.isObject()){
+                throw new InvalidRowException(null, "JSON invalid: se astepta un obiect");
+            }
+            return new ImportRow(objectMapper.treeToValue(node, ProductVo.class), node.hasNonNull("stock"));
+        } catch (JsonProcessingException e) {
+            throw new InvalidRowException(null, "JSON invalid: " + e.getOriginalMessage());
+        }
+    }
+
+    private ImportRow parseCsv(String line, Map<String, Integer> columns) throws InvalidRowException {
+        List<String> values = splitCsvLine(line);
+        ProductVo productVo = new ProductVo();
+        productVo.setCode(emptyToNull(column(values, columns, "code")));
+        productVo.setDescription(column(values, columns, "description"));
+        productVo.setPrice(parseLong(productVo.getCode(), "price", column(values, columns, "price")));
+        String stock = column(values, columns, "stock");
+        boolean hasStock = stock != null && !stock.isEmpty();
+        productVo.setStock(hasStock ? parseInt(productVo.getCode(), "stock", stock) : 0);
+        String valid = column(values, columns, "valid");
+        productVo.setValid(valid == null || valid.isEmpty() || Boolean.parseBoolean(valid));
+        String currency = column(values, columns, "currency");
+        try {
+            productVo.setCurrency(currency == null ? null : Currencies.valueOf(currency.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRowException(productVo.getCode(), "Moneda necunoscuta: " + currency);
+        }
+        return new ImportRow(productVo, hasStock);
+    }
+
+    private void validate(ProductVo productVo) throws InvalidRowException {
+        if(productVo.getCode() == null || productVo.getCode().trim().isEmpty()){
+            throw new InvalidRowException(null, "Codul produsului lipseste");
+        }
+        if(productVo.getCurrency() == null){
+            throw new InvalidRowException(productVo.getCode(), "Moneda lipseste");
+        }
+        if(productVo.getPrice() < 0){
+            throw new InvalidRowException(productVo.getCode(), "Pretul nu poate fi negativ");
+        }
+        if(productVo.getStock() < 0){
+            throw new InvalidRowException(productVo.getCode(), "Stocul nu poate fi negativ");
+        }
+    }
+
+    private void addError(ProductImportResultVO result, long rowNumber, String code, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if(result.getErrors().size() < maxReportedErrors){
+            result.getErrors().add(new ProductImportErrorVO(rowNumber, code, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+
+    private String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= values.size() ? null : values.get(index).trim();
+    }
+
+    private long parseLong(String code, String column, String value) throws InvalidRowException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidRowException(code, "Valoare invalida pentru " + column + ": " + value);
+        }
+    }
+
+    private int parseInt(String code, String column, String value) throws InvalidRowException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidRowException(code, "Valoare invalida pentru " + column + ": " + value);
+        }
+    }
+
+    private String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    // campurile pot fi intre ghilimele (cu "" pentru o ghilimea); un camp nu poate contine un rand nou
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    value.append('"');
+                    i++;
+                } else if(c == '"'){
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if(c == '"'){
+                quoted = true;
+            } else if(c == ','){
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    // hasStock este false cand randul nu are stoc; un produs nou porneste atunci cu stocul 0
+    private static class ImportRow {
+        private final ProductVo productVo;
+        private final boolean hasStock;
+
+        private ImportRow(ProductVo productVo, boolean hasStock) {
+            this.productVo = productVo;
+            this.hasStock = hasStock;
+        }
+    }
+
+    private static class InvalidRowException extends Exception {
+        private final String code;
+
+        private InvalidRowException(String code, String message) {
+            super(message, null, false, false);
+            this.code = code;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.repositories.ProductRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+// Index in memorie pentru cautarea produselor: un index inversat (cuvant -> produs -> de cate ori apare) peste
+// descriere si un index ordonat peste coduri pentru cautarea dupa prefix. Se construieste la pornire si se
+// actualizeaza dupa commit-ul fiecarei scrieri din ProductService.
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int BUILD_BATCH_SIZE = 1000;
+    // un produs al carui cod incepe cu textul cautat apare inaintea celor gasite doar in descriere
+    private static final int CODE_PREFIX_SCORE = 1000;
+
+    @Getter
+    public static class SearchResult {
+        private final List<Long> productIds;
+        private final int totalMatches;
+
+        private SearchResult(List<Long> productIds, int totalMatches) {
+            this.productIds = productIds;
+            this.totalMatches = totalMatches;
+        }
+    }
+
+    private final ProductRepository productRepository;
+
+    private final ConcurrentMap<String, ConcurrentMap<Long, Integer>> postingsByToken = new ConcurrentHashMap<>();
+    // cheia este codul cu litere mici urmat de id, ca doua coduri care difera doar prin majuscule sa nu se suprapuna
+    private final ConcurrentNavigableMap<String, Long> productIdsByCode = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Long, IndexedProduct> indexedProducts = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long lastId = 0;
+        List<Product> products;
+        do {
+            products = productRepository.findAllByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BUILD_BATCH_SIZE));
+            for(Product product : products){
+                index(product.getId(), product.getCode(), product.getDescription());
+                lastId = product.getId();
+            }
+        } while(products.size() == BUILD_BATCH_SIZE);
+    }
+
+    public void productChanged(Product product) {
+        long productId = product.getId();
+        String code = product.getCode();
+        String description = product.getDescription();
+        afterCommit(() -> index(productId, code, description));
+    }
+
+    public void productRemoved(long productId) {
+        afterCommit(() -> remove(productId));
+    }
+
+    // toate cuvintele din q trebuie sa apara in descriere, sau q sa fie prefixul codului;
+    // ordonate dupa scor (prefix de cod, apoi numarul de aparitii ale cuvintelor) si apoi dupa id
+    public SearchResult search(String query, int offset, int limit) {
+        Map<Long, Integer> scoresByProductId = new HashMap<>();
+        List<String> queryTokens = tokenize(query);
+        if(!queryTokens.isEmpty()){
+            scoreDescriptionMatches(queryTokens, scoresByProductId);
+        }
+        String codePrefix = normalizeCode(query.trim());
+        if(!codePrefix.isEmpty()){
+            for(Long productId : productIdsByCode.subMap(codePrefix, true, codePrefix + Character.MAX_VALUE, true).values()){
+                scoresByProductId.merge(productId, CODE_PREFIX_SCORE, Integer::sum);
+            }
+        }
+
+        // pastram doar primele offset + limit rezultate, nu sortam toate potrivirile
+        Comparator<Map.Entry<Long, Integer>> ranking = Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue)
+                .reversed().thenComparing(Map.Entry::getKey);
+        int wanted = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        PriorityQueue<Map.Entry<Long, Integer>> topMatches = new PriorityQueue<>(Math.min(wanted, scoresByProductId.size()) + 1, ranking.reversed());
+        for(Map.Entry<Long, Integer> match : scoresByProductId.entrySet()){
+            topMatches.add(match);
+            if(topMatches.size() > wanted){
+                topMatches.poll();
+            }
+        }
+        List<Map.Entry<Long, Integer>> rankedMatches = new ArrayList<>(topMatches);
+        rankedMatches.sort(ranking);
+
+        List<Long> productIds = new ArrayList<>(limit);
+        for(int i = offset; i < rankedMatches.size(); i++){
+            productIds.add(rankedMatches.get(i).getKey());
+        }
+        return new SearchResult(productIds, scoresByProductId.size());
+    }
+
+    private void scoreDescriptionMatches(List<String> queryTokens, Map<Long, Integer> scoresByProductId) {
+        List<ConcurrentMap<Long, Integer>> postings = new ArrayList<>(queryTokens.size());
+        for(String token : new LinkedHashSet<>(queryTokens)){
+            ConcurrentMap<Long, Integer> tokenPostings = postingsByToken.get(token);
+            if(tokenPostings == null){
+                return;
+            }
+            postings.add(tokenPostings);
+        }
+        // pornim de la cuvantul cel mai rar, celelalte doar filtreaza
+        postings.sort(Comparator.comparingInt(Map::size));
+        for(Map.Entry<Long, Integer> candidate : postings.get(0).entrySet()){
+            int score = candidate.getValue();
+            for(int i = 1; i < postings.size() && score > 0; i++){
+                Integer occurrences = postings.get(i).get(candidate.getKey());
+                score = occurrences == null ? 0 : score + occurrences;
+            }
+            if(score > 0){
+                scoresByProductId.put(candidate.getKey(), score);
+            }
+        }
+    }
+
+    private synchronized void index(long productId, String code, String description) {
+        remove(productId);
+        Map<String, Integer> occurrencesByToken = new HashMap<>();
+        for(String token : tokenize(description)){
+            occurrencesByToken.merge(token, 1, Integer::sum);
+        }
+        occurrencesByToken.forEach((token, occurrences) ->
+                postingsByToken.computeIfAbsent(token, key -> new ConcurrentHashMap<>()).put(productId, occurrences));
+        String codeKey = code == null ? null : normalizeCode(code) + '\u0000' + productId;
+        if(codeKey != null){
+            productIdsByCode.put(codeKey, productId);
+        }
+        indexedProducts.put(productId, new IndexedProduct(codeKey, occurrencesByToken.keySet()));
+    }
+
+    private synchronized void remove(long productId) {
+        IndexedProduct indexedProduct = indexedProducts.remove(productId);
+        if(indexedProduct == null){
+            return;
+        }
+        for(String token : indexedProduct.tokens){
+            postingsByToken.computeIfPresent(token, (key, postings) -> {
+                postings.remove(productId);
+                return postings.isEmpty() ? null : postings;
+            });
+        }
+        if(indexedProduct.codeKey != null){
+            productIdsByCode.remove(indexedProduct.codeKey, productId);
+        }
+    }
+
+    private List<String> tokenize(String text) {
+        if(text == null){
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        for(String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))){
+            if(!token.isEmpty()){
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private String normalizeCode(String code) {
+        return code.toLowerCase(Locale.ROOT);
+    }
+
+    private void afterCommit(Runnable action) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static class IndexedProduct {
+        private final String codeKey;
+        private final Set<String> tokens;
+
+        private IndexedProduct(String codeKey, Set<String> tokens) {
+            this.codeKey = codeKey;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -1,19 +1,27 @@
 package com.practice.onlineShop.services;
 
+import com.practice.onlineShop.aspects.RequiresRole;
+import com.practice.onlineShop.aspects.RetryOnConflict;
 import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.exceptions.InvalidPageTokenException;
 import com.practice.onlineShop.exceptions.InvalidProductCodeException;
 import com.practice.onlineShop.mappers.ProductMapper;
 import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.vos.ProductFilterVO;
+import com.practice.onlineShop.vos.ProductPageVO;
+import com.practice.onlineShop.vos.ProductSearchResultVO;
 import com.practice.onlineShop.vos.ProductVo;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.PathVariable;
 
 import javax.transaction.Transactional;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Optional;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.practice.onlineShop.enums.Roles.*;
 
 @Service
 @RequiredArgsConstructor
@@ -21,31 +29,98 @@ public class ProductService {
 
     private final ProductMapper productMapper;
     private final ProductRepository productRepository;
+    private final StockService stockService;
+    private final ProductCache productCache;
+    private final CatalogVersions catalogVersions;
+    private final ProductSearchIndex productSearchIndex;
+    private final CurrencyConverter currencyConverter;
+
+    @Value("${shop.product.page.default-size:100}")
+    private int defaultPageSize;
+
+    @Value("${shop.product.page.max-size:1000}")
+    private int maxPageSize;
+
+    @Value("${shop.product.search.default-results:20}")
+    private int defaultSearchResults;
+
+    @Value("${shop.product.search.max-results:100}")
+    private int maxSearchResults;
 
+    @Value("${shop.product.search.max-offset:10000}")
+    private int maxSearchOffset;
+
+    @RequiresRole(ADMIN)
     public void addProduct(ProductVo productVO, Long customerId){
         System.out.println("Customer with id " + customerId + " is in service");
         Product product = productMapper.toEntity(productVO);
         productRepository.save(product);
+        catalogVersions.productAdded(product.getCode(), product.getId());
+        productSearchIndex.productChanged(product);
     }
 
     public ProductVo getProduct(String productCode) throws InvalidProductCodeException {
-        Product product = getProductEntity(productCode);
+        return productCache.get(productCode, () -> productRepository.findVoByCode(productCode)
+                .orElseThrow(InvalidProductCodeException::new));
+    }
 
-        return productMapper.toVO(product);
+    // currency null = pretul in moneda produsului
+    public ProductVo getProduct(String productCode, Currencies currency) throws InvalidProductCodeException {
+        return currencyConverter.convert(getProduct(productCode), currency);
     }
 
     public List<ProductVo>  getProducts(){
-        List<ProductVo> products = new ArrayList<>();
-        Iterable<Product> productsFromDBIterable = productRepository.findAll();
-        Iterator<Product> iterator = productsFromDBIterable.iterator();
-        while(iterator.hasNext()) {
-            Product product = iterator.next();
-            ProductVo productVo = productMapper.toVO(product);
-            products.add(productVo);
+        return productRepository.findAllVos();
+    }
+
+    // cel mult limit produse dupa cel indicat de pageToken (null = prima pagina); se citeste un rand in plus
+    // doar ca sa stim daca mai urmeaza o pagina. Token-ul nu contine filtrele: clientul le trimite din nou.
+    public ProductPageVO getProductsPage(String pageToken, Integer limit, ProductFilterVO filter, Currencies currency) throws InvalidPageTokenException {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        long afterId = pageToken == null ? 0 : decodePageToken(pageToken);
+
+        List<ProductVo> productsFromDB = productRepository.findPage(filter, afterId, pageSize + 1);
+        boolean hasNextPage = productsFromDB.size() > pageSize;
+        List<ProductVo> products = hasNextPage ? productsFromDB.subList(0, pageSize) : productsFromDB;
+        currencyConverter.convertAll(products, currency);
+
+        ProductPageVO productPageVO = new ProductPageVO();
+        productPageVO.setProducts(products);
+        if(hasNextPage){
+            productPageVO.setNextPageToken(encodePageToken(products.get(products.size() - 1).getId()));
         }
-        return products;
+        return productPageVO;
     }
 
+    // clasamentul se face in ProductSearchIndex; din DB se citesc doar produsele paginii, intr-un singur SELECT
+    public ProductSearchResultVO searchProducts(String query, Integer offset, Integer limit, Currencies currency) {
+        int resultsSize = limit == null || limit <= 0 ? defaultSearchResults : Math.min(limit, maxSearchResults);
+        int firstResult = offset == null || offset < 0 ? 0 : Math.min(offset, maxSearchOffset);
+        ProductSearchIndex.SearchResult searchResult = productSearchIndex.search(query, firstResult, resultsSize);
+
+        Map<Long, ProductVo> productsById = new HashMap<>();
+        for(ProductVo product : productRepository.findVosByIdIn(searchResult.getProductIds())){
+            productsById.put(product.getId(), product);
+        }
+        List<ProductVo> products = new ArrayList<>(searchResult.getProductIds().size());
+        for(Long productId : searchResult.getProductIds()){
+            ProductVo product = productsById.get(productId);
+            // un produs sters chiar acum poate fi inca in index
+            if(product != null){
+                products.add(product);
+            }
+        }
+        currencyConverter.convertAll(products, currency);
+
+        ProductSearchResultVO productSearchResultVO = new ProductSearchResultVO();
+        productSearchResultVO.setProducts(products);
+        productSearchResultVO.setTotalMatches(searchResult.getTotalMatches());
+        return productSearchResultVO;
+    }
+
+    @RequiresRole({ADMIN, EDITOR})
+    @RetryOnConflict
+    @Transactional(rollbackOn = Exception.class)
     public void updateProduct(ProductVo productVo, Long customerId) throws InvalidProductCodeException {
         System.out.println("Customer with id " + customerId + " is in service for update!");
         verifyProductCode(productVo.getCode());
@@ -54,28 +129,49 @@ public class ProductService {
         product.setPrice(productVo.getPrice());
         product.setDescription(productVo.getDescription());
         product.setCurrency(productVo.getCurrency());
-        product.setStock(productVo.getStock());
+        stockService.setStock(product, productVo.getStock());
 
         productRepository.save(product);
+        productCache.invalidate(product.getCode());
+        catalogVersions.productChanged(product.getId());
+        productSearchIndex.productChanged(product);
     }
 
+    @RequiresRole(ADMIN)
+    @RetryOnConflict
+    @Transactional(rollbackOn = Exception.class)
     public void deleteProduct(String productCode, Long customerId) throws InvalidProductCodeException {
         System.out.println("User with id: " + customerId + " is deleting " + productCode);
         verifyProductCode(productCode);
 
         Product product = getProductEntity(productCode);
         productRepository.delete(product);
+        stockService.removeProduct(product.getId());
+        productCache.invalidate(product.getCode());
+        productSearchIndex.productRemoved(product.getId());
     }
 
+    @RequiresRole(ADMIN)
+    @RetryOnConflict
     @Transactional
     public void addStock(String productCode, Integer quantity, Long customerId ) throws InvalidProductCodeException {
         System.out.println("User with id: " + customerId + " is adding stock for " + productCode + ", number of items: " + quantity);
         verifyProductCode(productCode);
         Product product = getProductEntity(productCode);
+        stockService.addStock(product.getId(), quantity);
+    }
 
-        int oldStock = product.getStock();
-        product.setStock(oldStock + quantity);
+    // token-ul este opac pentru client; acum contine doar ultimul id, dar formatul se poate schimba
+    private String encodePageToken(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(lastId).getBytes(StandardCharsets.UTF_8));
+    }
 
+    private long decodePageToken(String pageToken) throws InvalidPageTokenException {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageTokenException();
+        }
     }
 
     private void verifyProductCode(String productCode) throws InvalidProductCodeException {
@@ -0,0 +1,205 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.entities.StockMovement;
+import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.repositories.StockMovementRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Stocul tinut in memorie, cate un contor CAS pe produs. Fiecare modificare este scrisa in stock_movement in
+// tranzactia apelantului si aplicata pe tabela product in loturi de flush(). La pornire, miscarile ramase
+// dintr-o oprire brusca sunt aplicate inainte de incarcarea contoarelor.
+// Presupune o singura instanta a aplicatiei care scrie stocul.
+@Component
+@ConditionalOnProperty(name = "shop.stock.ledger.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class StockLedger implements StockStore {
+
+    private final ProductRepository productRepository;
+    private final StockMovementRepository stockMovementRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCache productCache;
+    private final CatalogVersions catalogVersions;
+
+    private final ConcurrentMap<Long, AtomicInteger> stockByProductId = new ConcurrentHashMap<>();
+
+    @Value("${shop.stock.ledger.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    @Override
+    public boolean tryReserve(long productId, int quantity) {
+        AtomicInteger stock = getStock(productId);
+        if(stock == null){
+            return false;
+        }
+        int currentStock;
+        do {
+            currentStock = stock.get();
+            if(currentStock < quantity){
+                return false;
+            }
+        } while(!stock.compareAndSet(currentStock, currentStock - quantity));
+
+        registerMovement(productId, -quantity);
+        afterRollback(() -> stock.addAndGet(quantity));
+        return true;
+    }
+
+    @Override
+    public void release(long productId, int quantity) {
+        AtomicInteger stock = stockByProductId.get(productId);
+        if(stock == null){
+            return;
+        }
+        stock.addAndGet(quantity);
+        registerMovement(productId, quantity);
+        // rezervarea anulata aici isi reda singura stocul la rollback, deci il scoatem inapoi
+        afterRollback(() -> stock.addAndGet(-quantity));
+    }
+
+    @Override
+    public void add(long productId, int quantity) {
+        AtomicInteger stock = getStock(productId);
+        if(stock == null){
+            return;
+        }
+        registerMovement(productId, quantity);
+        // stocul nou devine vizibil doar dupa commit, altfel un rollback l-ar putea vinde fara sa existe
+        afterCommit(() -> stock.addAndGet(quantity));
+    }
+
+    @Override
+    public void set(Product product, int newStock) {
+        AtomicInteger stock = getStock(product.getId());
+        if(stock == null){
+            return;
+        }
+        // aplicam diferenta, nu valoarea: rezervarile concurente raman scrise in jurnal si trebuie pastrate.
+        // O scadere se vede imediat, ca la tryReserve: diferenta este cea fata de valoarea inlocuita prin CAS, deci
+        // o rezervare facuta intre citire si scriere nu se pierde
+        int currentStock;
+        int delta;
+        do {
+            currentStock = stock.get();
+            delta = newStock - currentStock;
+            if(delta >= 0){
+                break;
+            }
+        } while(!stock.compareAndSet(currentStock, newStock));
+        if(delta == 0){
+            return;
+        }
+        int appliedDelta = delta;
+        registerMovement(product.getId(), appliedDelta);
+        if(appliedDelta < 0){
+            afterRollback(() -> stock.addAndGet(-appliedDelta));
+        } else {
+            // o crestere se vede doar dupa commit, ca la add
+            afterCommit(() -> stock.addAndGet(appliedDelta));
+        }
+    }
+
+    @Override
+    public void evict(long productId) {
+        afterCommit(() -> stockByProductId.remove(productId));
+    }
+
+    @Scheduled(fixedDelayString = "${shop.stock.ledger.flush-interval-ms:200}")
+    public synchronized void flush() {
+        Integer flushedMovements;
+        do {
+            flushedMovements = transactionTemplate.execute(status -> flushBatch());
+        } while(flushedMovements != null && flushedMovements == flushBatchSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        flush();
+        for(Object[] row : stockMovementRepository.findAllStocksIncludingPendingMovements()){
+            stockByProductId.putIfAbsent(((Number) row[0]).longValue(), new AtomicInteger(((Number) row[1]).intValue()));
+        }
+    }
+
+    private int flushBatch() {
+        List<StockMovement> movements = stockMovementRepository.findAllByOrderByIdAsc(PageRequest.of(0, flushBatchSize));
+        if(movements.isEmpty()){
+            return 0;
+        }
+        // stergem exact ce am citit: o miscare cu id mai mic poate face commit dupa acest SELECT
+        List<Long> movementIds = new ArrayList<>(movements.size());
+        Map<Long, Integer> deltaByProductId = new TreeMap<>();
+        for(StockMovement movement : movements){
+            movementIds.add(movement.getId());
+            deltaByProductId.merge(movement.getProductId(), movement.getDelta(), Integer::sum);
+        }
+        deltaByProductId.forEach((productId, delta) -> {
+            if(delta != 0){
+                productRepository.incrementStock(productId, delta);
+                // stocul din tabela product s-a schimbat abia acum
+                productCache.invalidate(productId);
+                catalogVersions.productChanged(productId);
+            }
+        });
+        stockMovementRepository.deleteAllByIdIn(movementIds);
+        return movements.size();
+    }
+
+    private AtomicInteger getStock(long productId) {
+        AtomicInteger stock = stockByProductId.get(productId);
+        if(stock != null){
+            return stock;
+        }
+        Long stockFromDB = stockMovementRepository.findStockIncludingPendingMovements(productId);
+        if(stockFromDB == null){
+            return null;
+        }
+        AtomicInteger loadedStock = new AtomicInteger(stockFromDB.intValue());
+        AtomicInteger existingStock = stockByProductId.putIfAbsent(productId, loadedStock);
+        return existingStock != null ? existingStock : loadedStock;
+    }
+
+    private void registerMovement(long productId, int delta) {
+        StockMovement movement = new StockMovement();
+        movement.setProductId(productId);
+        movement.setDelta(delta);
+        stockMovementRepository.save(movement);
+    }
+
+    private void afterRollback(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != STATUS_COMMITTED){
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
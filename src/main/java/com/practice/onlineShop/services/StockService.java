@@ -1,19 +1,66 @@
 package com.practice.onlineShop.services;
 
 import com.practice.onlineShop.entities.Product;
-import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.exceptions.NotEnoughStockException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import javax.transaction.Transactional;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static javax.transaction.Transactional.TxType.MANDATORY;
 
 @Service
 @RequiredArgsConstructor
+@Transactional(MANDATORY)
 public class StockService {
 
-    private final ProductRepository productRepository;
-    public boolean isHavingEnoughStock(Integer productId, Integer quantity){
-        Product product = productRepository.findById(productId.longValue()).get();
-        return product.getStock() >= quantity;
+    private final StockStore stockStore;
+    private final ProductCache productCache;
+    private final CatalogVersions catalogVersions;
+
+    // daca o linie nu are stoc, tot ce s-a rezervat inainte se anuleaza la rollback-ul tranzactiei apelantului
+    public void reserveStock(Map<Integer, Integer> productIdsToQuantity) throws NotEnoughStockException {
+        if(!tryReserveStock(productIdsToQuantity)){
+            throw new NotEnoughStockException();
+        }
+    }
+
+    // rezerva toate liniile sau niciuna, fara sa marcheze tranzactia pentru rollback
+    public boolean tryReserveStock(Map<Integer, Integer> productIdsToQuantity) {
+        // ordonam dupa id ca doua comenzi concurente sa blocheze randurile in aceeasi ordine (fara deadlock)
+        Map<Integer, Integer> orderedProductIdsToQuantity = new TreeMap<>(productIdsToQuantity);
+        Map<Integer, Integer> reserved = new TreeMap<>();
+        for(Map.Entry<Integer, Integer> entry : orderedProductIdsToQuantity.entrySet()){
+            if(!stockStore.tryReserve(entry.getKey().longValue(), entry.getValue())){
+                reserved.forEach((productId, quantity) -> stockStore.release(productId.longValue(), quantity));
+                return false;
+            }
+            reserved.put(entry.getKey(), entry.getValue());
+        }
+        reserved.keySet().forEach(productId -> {
+            productCache.invalidate(productId.longValue());
+            catalogVersions.productChanged(productId.longValue());
+        });
+        return true;
+    }
+
+    public void addStock(long productId, int quantity) {
+        stockStore.add(productId, quantity);
+        productCache.invalidate(productId);
+        catalogVersions.productChanged(productId);
+    }
+
+    public void setStock(Product product, int stock) {
+        stockStore.set(product, stock);
+        productCache.invalidate(product.getId());
+        catalogVersions.productChanged(product.getId());
+    }
+
+    public void removeProduct(long productId) {
+        stockStore.evict(productId);
+        productCache.invalidate(productId);
+        catalogVersions.productChanged(productId);
     }
 }
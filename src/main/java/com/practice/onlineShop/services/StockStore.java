@@ -0,0 +1,18 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.Product;
+
+// locul unde se tine evidenta stocului: direct in baza de date sau in StockLedger (shop.stock.ledger.enabled)
+public interface StockStore {
+
+    boolean tryReserve(long productId, int quantity);
+
+    // anuleaza o rezervare facuta in tranzactia curenta
+    void release(long productId, int quantity);
+
+    void add(long productId, int quantity);
+
+    void set(Product product, int stock);
+
+    void evict(long productId);
+}
@@ -0,0 +1,196 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
+import com.practice.onlineShop.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+// Rolurile fiecarui user, tinute in memorie pentru SecurityAspect: o verificare de permisiune nu mai face SELECT
+// pe user si user_roles. Intrarile expira dupa ttl-ms, iar peste max-size sunt scoase cele mai vechi.
+// UserRolesCacheInvalidator scoate intrarea cand Hibernate scrie user-ul sau rolurile lui; modificarile facute
+// pe langa aplicatie (SQL direct) se vad dupa cel mult ttl-ms. Seturile intoarse sunt partajate si nu se modifica.
+@Component
+public class UserRolesCache {
+
+    private final UserRepository userRepository;
+    private final BoundedTtlCache<Long, CachedRoles> rolesByUserId;
+
+    private final boolean enabled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public UserRolesCache(UserRepository userRepository, MeterRegistry meterRegistry,
+                          @Value("${shop.security.roles-cache.enabled:true}") boolean enabled,
+                          @Value("${shop.security.roles-cache.max-size:100000}") int maxSize,
+                          @Value("${shop.security.roles-cache.ttl-ms:300000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.rolesByUserId = new BoundedTtlCache<>(maxSize, ttlMillis,
+                Counter.builder("shop.security.roles.cache.evictions").register(meterRegistry));
+
+        FunctionCounter.builder("shop.security.roles.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("shop.security.roles.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        meterRegistry.gauge("shop.security.roles.cache.size", rolesByUserId, BoundedTtlCache::size);
+        meterRegistry.gauge("shop.security.roles.cache.hit.ratio", this, UserRolesCache::getHitRatio);
+    }
+
+    public Set<Roles> getRoles(Long userId) throws InvalidCustomerIdException {
+        return getCachedRolesOrLoad(userId).roles;
+    }
+
+    // aceleasi roluri ca getRoles, ca masca de biti (vezi Roles.mask); masca se calculeaza o data, la incarcare
+    public int getRoleMask(Long userId) throws InvalidCustomerIdException {
+        return getCachedRolesOrLoad(userId).roleMask;
+    }
+
+    // masca din cache sau -1 daca user-ul nu este in cache; nu citeste din baza de date si nu intra in statistici
+    public int peekRoleMask(long userId) {
+        if(!enabled){
+            return -1;
+        }
+        CachedRoles cachedRoles = rolesByUserId.peek(userId);
+        return cachedRoles != null ? cachedRoles.roleMask : -1;
+    }
+
+    // rolurile tuturor user-ilor; cei care lipsesc din cache sunt cititi intr-un singur SELECT
+    public Map<Long, Set<Roles>> getRoles(Collection<Long> userIds) throws InvalidCustomerIdException {
+        Map<Long, Set<Roles>> rolesByRequestedId = new HashMap<>();
+        Set<Long> missingUserIds = new HashSet<>();
+        for(Long userId : userIds){
+            if(userId == null){
+                throw new InvalidCustomerIdException();
+            }
+            CachedRoles cachedRoles = getCachedRoles(userId);
+            if(cachedRoles == null){
+                missingUserIds.add(userId);
+            } else {
+                rolesByRequestedId.put(userId, cachedRoles.roles);
+            }
+        }
+        if(missingUserIds.isEmpty()){
+            return rolesByRequestedId;
+        }
+
+        Map<Long, BoundedTtlCache.Entry<Long, CachedRoles>> tokens = new HashMap<>();
+        if(enabled){
+            for(Long userId : missingUserIds){
+                tokens.put(userId, rolesByUserId.startLoad(userId));
+            }
+        }
+        Map<Long, CachedRoles> loadedRoles = new HashMap<>();
+        try {
+            List<User> users = userRepository.findAllWithRolesByIdIn(missingUserIds);
+            if(users.size() != missingUserIds.size()){
+                throw new InvalidCustomerIdException();
+            }
+            for(User user : users){
+                CachedRoles cachedRoles = toCachedRoles(user);
+                loadedRoles.put(user.getId(), cachedRoles);
+                rolesByRequestedId.put(user.getId(), cachedRoles.roles);
+            }
+        } finally {
+            for(Map.Entry<Long, BoundedTtlCache.Entry<Long, CachedRoles>> token : tokens.entrySet()){
+                finishLoad(token.getValue(), loadedRoles.get(token.getKey()));
+            }
+        }
+        return rolesByRequestedId;
+    }
+
+    public void invalidate(long userId) {
+        if(!enabled){
+            return;
+        }
+        rolesByUserId.invalidate(userId);
+        if(TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rolesByUserId.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        rolesByUserId.invalidateAll();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private CachedRoles getCachedRolesOrLoad(Long userId) throws InvalidCustomerIdException {
+        if(userId == null){
+            throw new InvalidCustomerIdException();
+        }
+        CachedRoles cachedRoles = getCachedRoles(userId);
+        if(cachedRoles != null){
+            return cachedRoles;
+        }
+
+        BoundedTtlCache.Entry<Long, CachedRoles> token = enabled ? rolesByUserId.startLoad(userId) : null;
+        try {
+            Optional<User> userOptional = userRepository.findWithRolesById(userId);
+            if(!userOptional.isPresent()){
+                throw new InvalidCustomerIdException();
+            }
+            cachedRoles = toCachedRoles(userOptional.get());
+        } finally {
+            finishLoad(token, cachedRoles);
+        }
+        return cachedRoles;
+    }
+
+    private CachedRoles getCachedRoles(long userId) {
+        CachedRoles cachedRoles = enabled ? rolesByUserId.get(userId) : null;
+        if(cachedRoles != null){
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cachedRoles;
+    }
+
+    // rolurile intra in cache doar daca user-ul nu a fost invalidat intre timp; o incarcare esuata scoate tokenul
+    private void finishLoad(BoundedTtlCache.Entry<Long, CachedRoles> token, CachedRoles cachedRoles) {
+        if(token == null){
+            return;
+        }
+        if(cachedRoles == null){
+            rolesByUserId.cancelLoad(token);
+        } else {
+            rolesByUserId.finishLoad(token, cachedRoles);
+        }
+    }
+
+    private CachedRoles toCachedRoles(User user) {
+        EnumSet<Roles> roles = EnumSet.noneOf(Roles.class);
+        if(user.getRoles() != null){
+            roles.addAll(user.getRoles());
+        }
+        return new CachedRoles(Collections.unmodifiableSet(roles), Roles.mask(roles));
+    }
+
+    private static class CachedRoles {
+        private final Set<Roles> roles;
+        private final int roleMask;
+
+        private CachedRoles(Set<Roles> roles, int roleMask) {
+            this.roles = roles;
+            this.roleMask = roleMask;
+        }
+    }
+}
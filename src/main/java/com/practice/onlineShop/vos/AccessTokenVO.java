@@ -0,0 +1,14 @@
+package com.practice.onlineShop.vos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccessTokenVO {
+    private String accessToken;
+    private long userId;
+    private long expiresAt;
+}
@@ -0,0 +1,18 @@
+package com.practice.onlineShop.vos;
+
+import com.practice.onlineShop.enums.AuditActions;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditRecordVO {
+    private long timestamp;
+    private AuditActions action;
+    private Long customerId;
+    private Long orderId;
+    private String productCode;
+    private Integer quantity;
+}
@@ -0,0 +1,9 @@
+package com.practice.onlineShop.vos;
+
+import lombok.Data;
+
+@Data
+public class LoginVO {
+    private String username;
+    private String password;
+}
@@ -0,0 +1,10 @@
+package com.practice.onlineShop.vos;
+
+import com.practice.onlineShop.enums.OrderErrors;
+import lombok.Data;
+
+@Data
+public class OrderResultVO {
+    private Long orderId; // null daca comanda a fost respinsa
+    private OrderErrors error;
+}
@@ -0,0 +1,14 @@
+package com.practice.onlineShop.vos;
+
+import com.practice.onlineShop.enums.Currencies;
+import lombok.Data;
+
+// filtrele optionale pentru GET /product; un camp null nu filtreaza. Pretul este in unitati minore ale priceCurrency
+// (parametrul currency al cererii este moneda in care se afiseaza preturile, nu un filtru)
+@Data
+public class ProductFilterVO {
+    private Currencies priceCurrency;
+    private Boolean valid;
+    private Long minPrice;
+    private Long maxPrice;
+}
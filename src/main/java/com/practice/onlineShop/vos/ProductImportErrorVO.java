@@ -0,0 +1,15 @@
+package com.practice.onlineShop.vos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// row este numarul liniei din fisier (1 = prima linie, inclusiv header-ul CSV)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportErrorVO {
+    private long row;
+    private String code;
+    private String message;
+}
@@ -0,0 +1,17 @@
+package com.practice.onlineShop.vos;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// errors contine cel mult shop.product.import.max-reported-errors erori; failed le numara pe toate
+@Data
+public class ProductImportResultVO {
+    private long rowsRead;
+    private long inserted;
+    private long updated;
+    private long failed;
+    private List<ProductImportErrorVO> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+}
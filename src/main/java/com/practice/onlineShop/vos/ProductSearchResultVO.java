@@ -0,0 +1,11 @@
+package com.practice.onlineShop.vos;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductSearchResultVO {
+    private List<ProductVo> products;
+    private int totalMatches;
+}
@@ -1,7 +1,9 @@
 package com.practice.onlineShop.vos;
 
 import com.practice.onlineShop.enums.Currencies;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import javax.persistence.Enumerated;
 
@@ -9,11 +11,14 @@ import static javax.persistence.EnumType.STRING;
 
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor // folosit de interogarile "select new ProductVo(...)" din ProductRepository
 public class ProductVo{
     private long id;
     private String code;
     private String description;
-    private double price;
+    // in unitati minore ale monedei (100 = 1.00 RON)
+    private long price;
     private int stock;
     private boolean valid;
     private Currencies currency;
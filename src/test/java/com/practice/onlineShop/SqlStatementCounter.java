@@ -0,0 +1,28 @@
+package com.practice.onlineShop;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SqlStatementCounter implements StatementInspector {
+
+    public static final String PROPERTY = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.practice.onlineShop.SqlStatementCounter";
+
+    private static final AtomicInteger SELECT_COUNT = new AtomicInteger();
+
+    @Override
+    public String inspect(String sql) {
+        if(sql.trim().toLowerCase().startsWith("select")){
+            SELECT_COUNT.incrementAndGet();
+        }
+        return sql;
+    }
+
+    public static void reset() {
+        SELECT_COUNT.set(0);
+    }
+
+    public static int getSelectCount() {
+        return SELECT_COUNT.get();
+    }
+}
@@ -2,6 +2,7 @@ package com.practice.onlineShop;
 
 import com.practice.onlineShop.entities.*;
 import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.enums.OrderStates;
 import com.practice.onlineShop.enums.Roles;
 import com.practice.onlineShop.repositories.OrderRepository;
 import com.practice.onlineShop.repositories.ProductRepository;
@@ -66,7 +67,7 @@ public class UtilsComponent {
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public Orders saveDeliveredOrders(User client, Product product) {
         Orders orderWithProducts = generateOrderItems(product, client);
-        orderWithProducts.setDelivered(true);
+        orderWithProducts.setState(OrderStates.DELIVERED);
         orderRepository.save(orderWithProducts);
         return orderWithProducts;
     }
@@ -79,10 +80,9 @@ public class UtilsComponent {
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public Orders saveCanceledAndDeliveredOrders(User client, Product product) {
+    public Orders saveCanceledOrders(User client, Product product) {
         Orders orderWithProducts = generateOrderItems(product, client);
-        orderWithProducts.setCanceled(true);
-        orderWithProducts.setDelivered(true);
+        orderWithProducts.setState(OrderStates.CANCELED);
         orderRepository.save(orderWithProducts);
         return orderWithProducts;
     }
@@ -0,0 +1,48 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.services.ProductConflictStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.*;
+
+public class ConflictRetryAspectTest {
+
+    private final ProductConflictStatistics productConflictStatistics = new ProductConflictStatistics(new SimpleMeterRegistry(), 100);
+    private final ConflictRetryAspect conflictRetryAspect = new ConflictRetryAspect(productConflictStatistics, 3, 1, 2);
+
+    @Test
+    public void retryOnConflict_whenTheSecondAttemptSucceeds_shouldReturnItsResult() throws Throwable {
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{"aCode", 1, 1L});
+        when(joinPoint.proceed())
+                .thenThrow(new ObjectOptimisticLockingFailureException("Product", 1L))
+                .thenReturn("ok");
+
+        Object result = conflictRetryAspect.retryOnConflict(joinPoint);
+
+        assertThat(result).isEqualTo("ok");
+        verify(joinPoint, times(2)).proceed();
+        assertThat(productConflictStatistics.getConflicts("aCode")).isEqualTo(1);
+        assertThat(productConflictStatistics.getRetries("aCode")).isEqualTo(1);
+    }
+
+    @Test
+    public void retryOnConflict_whenEveryAttemptConflicts_shouldRethrowAfterMaxAttempts() throws Throwable {
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{"aHotCode", 1L});
+        when(joinPoint.proceed()).thenThrow(new ObjectOptimisticLockingFailureException("Product", 1L));
+
+        Throwable throwable = catchThrowable(() -> conflictRetryAspect.retryOnConflict(joinPoint));
+
+        assertThat(throwable).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        verify(joinPoint, times(3)).proceed();
+        assertThat(productConflictStatistics.getConflicts("aHotCode")).isEqualTo(3);
+        assertThat(productConflictStatistics.getRetries("aHotCode")).isEqualTo(2);
+        assertThat(productConflictStatistics.hotProducts()).extracting(entry -> entry.get("code")).containsExactly("aHotCode");
+    }
+}
@@ -0,0 +1,109 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
+import com.practice.onlineShop.exceptions.InvalidOperationException;
+import com.practice.onlineShop.repositories.UserRepository;
+import com.practice.onlineShop.services.AccessTokenService;
+import com.practice.onlineShop.services.UserRolesCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+
+import static com.practice.onlineShop.enums.Roles.*;
+import static org.mockito.Mockito.*;
+
+// Costul verificarii de securitate pe apel: vechiul aspect (pointcut pe nume, argumentul luat dupa pozitie,
+// Collection.contains pe roluri) fata de @RequiresRole cu regula precalculata si masca de roluri.
+// Rolurile sunt deja in UserRolesCache, deci se masoara doar aspectul. Nu este un test; se porneste din IDE sau cu
+//   mvn test-compile exec:java -Dexec.mainClass=com.practice.onlineShop.aspects.SecurityAspectBenchmark -Dexec.classpathScope=test
+public class SecurityAspectBenchmark {
+
+    private static final int WARMUP_CALLS = 2_000_000;
+    private static final int MEASURED_CALLS = 10_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        User expeditor = new User();
+        expeditor.setId(1L);
+        expeditor.setRoles(Arrays.asList(EXPEDITOR, CLIENT));
+        when(userRepository.findWithRolesById(1L)).thenReturn(Optional.of(expeditor));
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, new SimpleMeterRegistry(), true, 10, Long.MAX_VALUE / 2);
+
+        PermissionMatrix permissionMatrix = new PermissionMatrix();
+        DeliveryService target = new DeliveryService();
+        permissionMatrix.postProcessBeforeInitialization(target, "deliveryService");
+
+        DeliveryService unguarded = proxy(target);
+        DeliveryService legacy = proxy(target, new LegacySecurityAspect(userRolesCache));
+        DeliveryService guarded = proxy(target, new SecurityAspect(permissionMatrix, userRolesCache,
+                new AccessTokenService(userRepository, "aBenchmarkSecret", 60000), false));
+
+        for(int round = 1; round <= ROUNDS; round++){
+            double unguardedNanos = measure(unguarded);
+            double legacyNanos = measure(legacy);
+            double guardedNanos = measure(guarded);
+            System.out.printf("runda %d: fara aspect %.1f ns/apel, aspect vechi +%.1f ns, @RequiresRole +%.1f ns%n",
+                    round, unguardedNanos, legacyNanos - unguardedNanos, guardedNanos - unguardedNanos);
+        }
+    }
+
+    private static double measure(DeliveryService deliveryService) throws Exception {
+        for(int i = 0; i < WARMUP_CALLS; i++){
+            deliveryService.deliver(i, 1L);
+        }
+        long start = System.nanoTime();
+        for(int i = 0; i < MEASURED_CALLS; i++){
+            deliveryService.deliver(i, 1L);
+        }
+        return (double) (System.nanoTime() - start) / MEASURED_CALLS;
+    }
+
+    private static DeliveryService proxy(DeliveryService target, Object... aspects) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        for(Object aspect : aspects){
+            proxyFactory.addAspect(aspect);
+        }
+        return proxyFactory.getProxy();
+    }
+
+    public static class DeliveryService {
+        private int deliveredOrders;
+
+        @RequiresRole(EXPEDITOR)
+        public void deliver(Integer orderId, Long customerId) throws InvalidCustomerIdException, InvalidOperationException {
+            deliveredOrders++;
+        }
+    }
+
+    // SecurityAspect de dinainte de @RequiresRole, pentru metoda deliver
+    @Aspect
+    public static class LegacySecurityAspect {
+        private final UserRolesCache userRolesCache;
+
+        public LegacySecurityAspect(UserRolesCache userRolesCache) {
+            this.userRolesCache = userRolesCache;
+        }
+
+        @Before("execution(* com.practice.onlineShop.aspects.SecurityAspectBenchmark.DeliveryService.deliver(..))")
+        public void checkSecurityBeforeDeliver(JoinPoint joinPoint) throws InvalidCustomerIdException, InvalidOperationException {
+            Long customerId = (Long) joinPoint.getArgs()[1];
+            if(userIsNotAllowedToDeliver(userRolesCache.getRoles(customerId))){
+                throw new InvalidOperationException();
+            }
+        }
+
+        private boolean userIsNotAllowedToDeliver(Collection<Roles> roles) {
+            return !roles.contains(EXPEDITOR);
+        }
+    }
+}
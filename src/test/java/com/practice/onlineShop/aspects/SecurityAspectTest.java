@@ -0,0 +1,175 @@
+package com.practice.onlineShop.aspects;
+
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidAccessTokenException;
+import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
+import com.practice.onlineShop.exceptions.InvalidOperationException;
+import com.practice.onlineShop.repositories.UserRepository;
+import com.practice.onlineShop.services.AccessTokenService;
+import com.practice.onlineShop.services.UserRolesCache;
+import com.practice.onlineShop.vos.LoginVO;
+import com.practice.onlineShop.vos.OrderVO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static com.practice.onlineShop.enums.Roles.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SecurityAspectTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserRolesCache userRolesCache = new UserRolesCache(userRepository, new SimpleMeterRegistry(), true, 10, 60000);
+    private final PermissionMatrix permissionMatrix = new PermissionMatrix();
+    private final UserRepository loginUserRepository = mock(UserRepository.class);
+    private final AccessTokenService accessTokenService = new AccessTokenService(loginUserRepository, "aTestSecret", 60000);
+
+    @After
+    public void resetRequestAttributes() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void postProcessBeforeInitialization_shouldResolveTheCustomerArgumentOnce() throws Exception {
+        permissionMatrix.postProcessBeforeInitialization(new GuardedService(), "guardedService");
+
+        assertThat(permissionMatrix.size()).isEqualTo(4);
+        PermissionMatrix.PermissionRule deliverRule = permissionMatrix.getRule(GuardedService.class.getMethod("deliver", Integer.class, Long.class));
+        assertThat(deliverRule.getArgumentIndex()).isEqualTo(1);
+        assertThat(deliverRule.getArgumentKind()).isEqualTo(PermissionMatrix.PermissionRule.CUSTOMER_ID);
+        assertThat(deliverRule.getRequiredMask()).isEqualTo(EXPEDITOR.mask());
+
+        PermissionMatrix.PermissionRule updateRule = permissionMatrix.getRule(GuardedService.class.getMethod("update", String.class, Long.class));
+        assertThat(updateRule.allows(EDITOR.mask())).isTrue();
+        assertThat(updateRule.allows(CLIENT.mask() | EXPEDITOR.mask())).isFalse();
+
+        assertThat(permissionMatrix.getRule(GuardedService.class.getMethod("addOrder", OrderVO.class)).getArgumentKind())
+                .isEqualTo(PermissionMatrix.PermissionRule.ORDER);
+        assertThat(permissionMatrix.getRule(GuardedService.class.getMethod("addOrders", List.class)).getArgumentKind())
+                .isEqualTo(PermissionMatrix.PermissionRule.ORDERS);
+    }
+
+    @Test
+    public void postProcessBeforeInitialization_whenThereIsNoCustomerArgument_shouldFailAtStartup() {
+        assertThatThrownBy(() -> permissionMatrix.postProcessBeforeInitialization(new UnresolvableService(), "unresolvableService"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void checkRequiredRole_shouldAllowOnlyUsersWithOneOfTheRoles() throws Exception {
+        when(userRepository.findWithRolesById(1L)).thenReturn(Optional.of(user(1L, EXPEDITOR)));
+        when(userRepository.findWithRolesById(2L)).thenReturn(Optional.of(user(2L, CLIENT)));
+        GuardedService guardedService = proxy(new GuardedService());
+
+        guardedService.deliver(10, 1L);
+
+        assertThatThrownBy(() -> guardedService.deliver(10, 2L)).isInstanceOf(InvalidOperationException.class);
+        assertThatThrownBy(() -> guardedService.deliver(10, null)).isInstanceOf(InvalidCustomerIdException.class);
+    }
+
+    @Test
+    public void checkRequiredRole_forOrders_shouldCheckEveryUserOfTheBatch() throws Exception {
+        when(userRepository.findWithRolesById(2L)).thenReturn(Optional.of(user(2L, CLIENT)));
+        // user-ul 2 este deja in cache dupa addOrder, deci lotul il mai citeste doar pe 3
+        when(userRepository.findAllWithRolesByIdIn(any())).thenReturn(Collections.singletonList(user(3L, ADMIN)));
+        GuardedService guardedService = proxy(new GuardedService());
+
+        guardedService.addOrder(order(2));
+        assertThatThrownBy(() -> guardedService.addOrder(order(null))).isInstanceOf(InvalidCustomerIdException.class);
+        assertThatThrownBy(() -> guardedService.addOrders(Arrays.asList(order(2), order(3)))).isInstanceOf(InvalidOperationException.class);
+    }
+
+    @Test
+    public void checkRequiredRole_withAnAccessToken_shouldUseItsRolesWithoutReadingTheUser() throws Exception {
+        User expeditor = user(1L, EXPEDITOR);
+        expeditor.setUsername("anExpeditor");
+        expeditor.setPassword("aPassword");
+        when(loginUserRepository.findWithRolesByUsername("anExpeditor")).thenReturn(Optional.of(expeditor));
+        LoginVO loginVO = new LoginVO();
+        loginVO.setUsername("anExpeditor");
+        loginVO.setPassword("aPassword");
+        String token = accessTokenService.login(loginVO).getAccessToken();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, AccessTokenService.BEARER_PREFIX + token);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        GuardedService guardedService = proxy(new GuardedService(), true);
+
+        guardedService.deliver(10, 1L);
+
+        verifyNoInteractions(userRepository);
+        // token-ul altui user nu poate fi folosit pentru customerId-ul 2
+        assertThatThrownBy(() -> guardedService.deliver(10, 2L)).isInstanceOf(InvalidOperationException.class);
+        assertThatThrownBy(() -> guardedService.update("aCode", 1L)).isInstanceOf(InvalidOperationException.class);
+    }
+
+    @Test
+    public void checkRequiredRole_whenTheTokenIsRequired_shouldRejectRequestsWithoutOne() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        GuardedService guardedService = proxy(new GuardedService(), true);
+
+        assertThatThrownBy(() -> guardedService.deliver(10, 1L)).isInstanceOf(InvalidAccessTokenException.class);
+        verifyNoInteractions(userRepository);
+    }
+
+    private GuardedService proxy(GuardedService target) {
+        return proxy(target, false);
+    }
+
+    private GuardedService proxy(GuardedService target, boolean tokenRequired) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(new SecurityAspect(permissionMatrix, userRolesCache, accessTokenService, tokenRequired));
+        return proxyFactory.getProxy();
+    }
+
+    private OrderVO order(Integer userId) {
+        OrderVO orderVO = new OrderVO();
+        orderVO.setUserId(userId);
+        return orderVO;
+    }
+
+    private User user(long id, Roles... roles) {
+        User user = new User();
+        user.setId(id);
+        user.setRoles(Arrays.asList(roles));
+        return user;
+    }
+
+    public static class GuardedService {
+        @RequiresRole(EXPEDITOR)
+        public void deliver(Integer orderId, Long customerId) throws InvalidCustomerIdException, InvalidOperationException, InvalidAccessTokenException {
+        }
+
+        @RequiresRole({ADMIN, EDITOR})
+        public void update(String productCode, Long customerId) throws InvalidCustomerIdException, InvalidOperationException, InvalidAccessTokenException {
+        }
+
+        @RequiresRole(CLIENT)
+        public void addOrder(OrderVO orderVO) throws InvalidCustomerIdException, InvalidOperationException {
+        }
+
+        @RequiresRole(CLIENT)
+        public void addOrders(List<OrderVO> orderVOs) throws InvalidCustomerIdException, InvalidOperationException {
+        }
+    }
+
+    public static class UnresolvableService {
+        @RequiresRole(ADMIN)
+        public void deleteProduct(String productCode) {
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package com.practice.onlineShop.controllers;
 
+import com.practice.onlineShop.SqlStatementCounter;
 import com.practice.onlineShop.UtilsComponent;
 import com.practice.onlineShop.entities.OrderItem;
 import com.practice.onlineShop.entities.Orders;
 import com.practice.onlineShop.entities.Product;
 import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.DeliveryOutcomes;
+import com.practice.onlineShop.enums.OrderErrors;
+import com.practice.onlineShop.enums.OrderStates;
+import com.practice.onlineShop.enums.ReturnOutcomes;
 import com.practice.onlineShop.enums.Roles;
 import com.practice.onlineShop.repositories.OrderRepository;
+import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.vos.DeliveryResultVO;
+import com.practice.onlineShop.vos.OrderResultVO;
 import com.practice.onlineShop.vos.OrderVO;
+import com.practice.onlineShop.vos.ReturnResultVO;
+import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
+import com.practice.onlineShop.services.UserRolesCache;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,11 +27,14 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
 
 import javax.transaction.Transactional;
 import java.util.*;
@@ -32,7 +46,8 @@ import static org.springframework.http.HttpEntity.EMPTY;
 import static org.springframework.http.HttpMethod.PATCH;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
-@SpringBootTest(webEnvironment = RANDOM_PORT)
+// snapshot-ul catalogului se reconstruieste pe alt fir si i-ar adauga SELECT-urile la numaratoare
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {SqlStatementCounter.PROPERTY, "shop.product.snapshot.refresh-interval-ms=3600000"})
 class OrderControllerIntegrationTest {
 
     @TestConfiguration
@@ -58,6 +73,12 @@ class OrderControllerIntegrationTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRolesCache userRolesCache;
+
     @Test
     @Transactional
     public void addOrderWhenOrderIsValidShouldAddItToDB(){
@@ -82,6 +103,109 @@ class OrderControllerIntegrationTest {
         assertThat(orderItemOptional).isPresent();
     }
 
+    @Test
+    public void addOrderWhenOneProductHasNotEnoughStockShouldNotDecrementAnyStock(){
+        User user = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("codeForStockRollback1", "codeForStockRollback2");
+        Product productWithoutStock = productRepository.findByCode("codeForStockRollback2").get();
+
+        OrderVO orderVO = createOrderVO(user, product);
+        orderVO.getProductIdsToQuantity().put((int) productWithoutStock.getId(), productWithoutStock.getStock() + 1);
+
+        ResponseEntity<String> responseEntity = testRestTemplate.postForEntity(LOCALHOST + port + "/order", orderVO, String.class);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(BAD_REQUEST);
+        assertThat(responseEntity.getBody()).isEqualTo("Un produs nu a avut stocul necesar!");
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(product.getStock());
+        assertThat(productRepository.findById(productWithoutStock.getId()).get().getStock()).isEqualTo(productWithoutStock.getStock());
+    }
+
+    @Test
+    public void addOrderShouldRunTheSameNumberOfQueriesRegardlessOfTheNumberOfLines() throws InvalidCustomerIdException {
+        User user = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        utilsComponent.storedTwoProductsInDB("codeForQueryCount1", "codeForQueryCount2");
+        utilsComponent.storedTwoProductsInDB("codeForQueryCount3", "codeForQueryCount4");
+        Product singleLineProduct = productRepository.findByCode("codeForQueryCount1").get();
+        // rolurile sunt citite o singura data, la prima comanda a user-ului
+        userRolesCache.getRoles(user.getId());
+
+        OrderVO singleLineOrder = createOrderVO(user, singleLineProduct);
+        SqlStatementCounter.reset();
+        ResponseEntity<Void> singleLineResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/order", singleLineOrder, Void.class);
+        int singleLineSelects = SqlStatementCounter.getSelectCount();
+
+        OrderVO multiLineOrder = createOrderVO(user, productRepository.findByCode("codeForQueryCount2").get());
+        for(String code : Arrays.asList("codeForQueryCount3", "codeForQueryCount4")){
+            multiLineOrder.getProductIdsToQuantity().put((int) productRepository.findByCode(code).get().getId(), 1);
+        }
+        SqlStatementCounter.reset();
+        ResponseEntity<Void> multiLineResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/order", multiLineOrder, Void.class);
+        int multiLineSelects = SqlStatementCounter.getSelectCount();
+
+        assertThat(singleLineResponse.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(multiLineResponse.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(singleLineSelects).isPositive();
+        assertThat(multiLineSelects).isEqualTo(singleLineSelects);
+    }
+
+    @Test
+    public void addOrdersShouldSaveTheValidOrdersAndReportTheRejectedOnes(){
+        User user = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("codeForBatchOrder1", "codeForBatchOrder2");
+        Product productWithoutStock = productRepository.findByCode("codeForBatchOrder2").get();
+
+        OrderVO validOrder = createOrderVO(user, product);
+        OrderVO orderWithoutStock = createOrderVO(user, productWithoutStock);
+        orderWithoutStock.getProductIdsToQuantity().put((int) productWithoutStock.getId(), productWithoutStock.getStock() + 1);
+
+        ResponseEntity<OrderResultVO[]> responseEntity = testRestTemplate.postForEntity(LOCALHOST + port + "/order/batch",
+                Arrays.asList(validOrder, orderWithoutStock), OrderResultVO[].class);
+
+        OrderResultVO[] results = responseEntity.getBody();
+        assertThat(results).hasSize(2);
+        assertThat(results[0].getError()).isNull();
+        assertThat(orderRepository.findById(results[0].getOrderId())).isPresent();
+        assertThat(results[1].getOrderId()).isNull();
+        assertThat(results[1].getError()).isEqualTo(OrderErrors.NOT_ENOUGH_STOCK);
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(product.getStock() - 1);
+        assertThat(productRepository.findById(productWithoutStock.getId()).get().getStock()).isEqualTo(productWithoutStock.getStock());
+    }
+
+    @Test
+    public void addOrdersWhenOneCustomerIsNotAClientShouldRejectTheWholeBatch(){
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        Product product = utilsComponent.storedTwoProductsInDB("codeForBatchOrderByAdmin1", "codeForBatchOrderByAdmin2");
+
+        ResponseEntity<String> responseEntity = testRestTemplate.postForEntity(LOCALHOST + port + "/order/batch",
+                Arrays.asList(createOrderVO(client, product), createOrderVO(admin, product)), String.class);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(BAD_REQUEST);
+        assertThat(responseEntity.getBody()).isEqualTo("Utilizatorul nu are permisiunea de a executa aceasta operatiune!");
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(product.getStock());
+    }
+
+    @Test
+    public void addOrderWhenRetriedWithTheSameIdempotencyKeyShouldPlaceItOnlyOnce(){
+        User user = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("codeForIdempotentOrder1", "codeForIdempotentOrder2");
+        OrderVO orderVO = createOrderVO(user, product);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", "retry-" + user.getId());
+        ResponseEntity<String> firstResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/order", new HttpEntity<>(orderVO, headers), String.class);
+        ResponseEntity<String> retriedResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/order", new HttpEntity<>(orderVO, headers), String.class);
+
+        assertThat(firstResponse.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(retriedResponse.getStatusCode().is2xxSuccessful()).isTrue();
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(product.getStock() - 1);
+
+        orderVO.getProductIdsToQuantity().put((int) product.getId(), 2);
+        ResponseEntity<String> reusedKeyResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/order", new HttpEntity<>(orderVO, headers), String.class);
+        assertThat(reusedKeyResponse.getStatusCode()).isEqualTo(BAD_REQUEST);
+        assertThat(reusedKeyResponse.getBody()).isEqualTo("Cheia de idempotenta a fost deja folosita pentru o alta comanda!");
+    }
+
     @Test
     public void whenRequestIsMadeByAdminShouldThrowException(){
         User user = utilsComponent.saveUserWithRole(Roles.ADMIN);
@@ -121,7 +245,7 @@ class OrderControllerIntegrationTest {
 
         Orders orderFromDB = orderRepository.findById(orderWithProducts.getId()).get();
 
-        assertThat(orderFromDB.isDelivered()).isTrue();
+        assertThat(orderFromDB.getState()).isEqualTo(OrderStates.DELIVERED);
     }
 
     @Test
@@ -168,7 +292,7 @@ class OrderControllerIntegrationTest {
         User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
 
         Orders orderWithProducts = utilsComponent.generateOrderItems(product, client);
-        orderWithProducts.setCanceled(true);
+        orderWithProducts.setState(OrderStates.CANCELED);
         orderRepository.save(orderWithProducts);
 
         try{
@@ -179,6 +303,42 @@ class OrderControllerIntegrationTest {
         }
     }
 
+    @Test
+    public void deliverOrdersShouldReturnAnOutcomeForEveryOrderId(){
+        User expeditor = utilsComponent.saveUserWithRole(Roles.EXPEDITOR);
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("code1ForBulkDeliver", "code2ForBulkDeliver");
+        Orders newOrder = utilsComponent.saveOrders(client, product);
+        Orders canceledOrder = utilsComponent.saveCanceledOrders(client, product);
+        Orders deliveredOrder = utilsComponent.saveDeliveredOrders(client, product);
+        Integer unknownOrderId = Integer.MAX_VALUE;
+
+        List<Integer> orderIds = Arrays.asList((int) newOrder.getId(), (int) canceledOrder.getId(), (int) deliveredOrder.getId(), unknownOrderId);
+        ResponseEntity<DeliveryResultVO[]> response = restTemplateForPatch.exchange(LOCALHOST + port + "/order/deliver/" + expeditor.getId(),
+                PATCH, new HttpEntity<>(orderIds), DeliveryResultVO[].class);
+
+        assertThat(response.getBody()).extracting(DeliveryResultVO::getOutcome)
+                .containsExactly(DeliveryOutcomes.DELIVERED, DeliveryOutcomes.CANCELED, DeliveryOutcomes.DELIVERED, DeliveryOutcomes.UNKNOWN);
+        assertThat(orderRepository.findById(newOrder.getId()).get().getState()).isEqualTo(OrderStates.DELIVERED);
+        assertThat(orderRepository.findById(canceledOrder.getId()).get().getState()).isEqualTo(OrderStates.CANCELED);
+    }
+
+    @Test
+    public void deliverOrdersWhenUserIsClientShouldThrowAnException(){
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("code1ForBulkDeliverByClient", "code2ForBulkDeliverByClient");
+        Orders order = utilsComponent.saveOrders(client, product);
+
+        try{
+            restTemplateForPatch.exchange(LOCALHOST + port + "/order/deliver/" + client.getId(),
+                    PATCH, new HttpEntity<>(Collections.singletonList((int) order.getId())), String.class);
+            fail("A client should not be allowed to deliver orders");
+        } catch(RestClientException restClientException){
+            assertThat(restClientException.getMessage()).isEqualTo("400 : [Utilizatorul nu are permisiunea de a executa aceasta operatiune!]");
+        }
+        assertThat(orderRepository.findById(order.getId()).get().getState()).isEqualTo(OrderStates.NEW);
+    }
+
     @Test
     public void cancelWhenValidOrderShouldCancelIt(){
         User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
@@ -192,7 +352,7 @@ class OrderControllerIntegrationTest {
 
         Orders orderFromDB = orderRepository.findById(orderWithProducts.getId()).get();
 
-        assertThat(orderFromDB.isCanceled()).isTrue();
+        assertThat(orderFromDB.getState()).isEqualTo(OrderStates.CANCELED);
     }
 
     @Test
@@ -252,7 +412,7 @@ class OrderControllerIntegrationTest {
                 PATCH, EMPTY, Void.class);
 
         Orders orderFromDB = orderRepository.findById(orderWithProducts.getId()).get();
-        assertThat(orderFromDB.isReturned()).isTrue();
+        assertThat(orderFromDB.getState()).isEqualTo(OrderStates.RETURNED);
         assertThat(orderFromDB.getOrderItems().get(0).getProduct().getStock()).isEqualTo(product.getStock()
                 + orderWithProducts.getOrderItems().get(0).getQuantity());
     }
@@ -278,7 +438,7 @@ class OrderControllerIntegrationTest {
     public void returnWhenOrderIsCanceledShouldThrowException(){
         User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
         Product product = utilsComponent.storedTwoProductsInDB("productForReturn28", "productForReturn39");
-        Orders orderWithProducts = utilsComponent.saveCanceledAndDeliveredOrders(client, product);
+        Orders orderWithProducts = utilsComponent.saveCanceledOrders(client, product);
 
         try{
             restTemplateForPatch.exchange(LOCALHOST + port + "/order/return/" + orderWithProducts.getId() + "/" + client.getId(),
@@ -316,6 +476,63 @@ class OrderControllerIntegrationTest {
         }
     }
 
+    @Test
+    public void returnWhenOrderWasAlreadyReturnedShouldNotRestoreTheStockTwice(){
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("productForDoubleReturn1", "productForDoubleReturn2");
+        Orders orderWithProducts = utilsComponent.saveDeliveredOrders(client, product);
+
+        restTemplateForPatch.exchange(LOCALHOST + port + "/order/return/" + orderWithProducts.getId() + "/" + client.getId(),
+                PATCH, EMPTY, Void.class);
+        try{
+            restTemplateForPatch.exchange(LOCALHOST + port + "/order/return/" + orderWithProducts.getId() + "/" + client.getId(),
+                    PATCH, EMPTY, String.class);
+            fail("Returning an order twice should be rejected");
+        } catch(RestClientException restClientException){
+            assertThat(restClientException.getMessage()).isEqualTo("400 : [Comanda a fost deja returnata!]");
+        }
+
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(product.getStock() + 1);
+    }
+
+    @Test
+    public void returnOrdersShouldRestoreTheStockOfEveryDeliveredOrder(){
+        User expeditor = utilsComponent.saveUserWithRole(Roles.EXPEDITOR);
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("productForBulkReturn1", "productForBulkReturn2");
+        Orders firstDeliveredOrder = utilsComponent.saveDeliveredOrders(client, product);
+        Orders secondDeliveredOrder = utilsComponent.saveDeliveredOrders(client, product);
+        Orders newOrder = utilsComponent.saveOrders(client, product);
+        Orders canceledOrder = utilsComponent.saveCanceledOrders(client, product);
+
+        List<Integer> orderIds = Arrays.asList((int) firstDeliveredOrder.getId(), (int) secondDeliveredOrder.getId(),
+                (int) newOrder.getId(), (int) canceledOrder.getId(), Integer.MAX_VALUE, (int) firstDeliveredOrder.getId());
+        ResponseEntity<ReturnResultVO[]> response = restTemplateForPatch.exchange(LOCALHOST + port + "/order/return/" + expeditor.getId(),
+                PATCH, new HttpEntity<>(orderIds), ReturnResultVO[].class);
+
+        assertThat(response.getBody()).extracting(ReturnResultVO::getOutcome)
+                .containsExactly(ReturnOutcomes.RETURNED, ReturnOutcomes.RETURNED, ReturnOutcomes.NOT_DELIVERED,
+                        ReturnOutcomes.CANCELED, ReturnOutcomes.UNKNOWN, ReturnOutcomes.ALREADY_RETURNED);
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(product.getStock() + 2);
+        assertThat(orderRepository.findById(secondDeliveredOrder.getId()).get().getState()).isEqualTo(OrderStates.RETURNED);
+    }
+
+    @Test
+    public void returnOrdersWhenUserIsClientShouldThrowAnException(){
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.storedTwoProductsInDB("productForBulkReturnByClient1", "productForBulkReturnByClient2");
+        Orders order = utilsComponent.saveDeliveredOrders(client, product);
+
+        try{
+            restTemplateForPatch.exchange(LOCALHOST + port + "/order/return/" + client.getId(),
+                    PATCH, new HttpEntity<>(Collections.singletonList((int) order.getId())), String.class);
+            fail("A client should not be allowed to return orders in bulk");
+        } catch(RestClientException restClientException){
+            assertThat(restClientException.getMessage()).isEqualTo("400 : [Utilizatorul nu are permisiunea de a executa aceasta operatiune!]");
+        }
+        assertThat(orderRepository.findById(order.getId()).get().getState()).isEqualTo(OrderStates.DELIVERED);
+    }
+
     private OrderVO createOrderVO(User user, Product product) {
         OrderVO orderVO = new OrderVO();
         orderVO.setUserId((int) user.getId());
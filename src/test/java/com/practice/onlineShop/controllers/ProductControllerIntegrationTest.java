@@ -1,5 +1,6 @@
 package com.practice.onlineShop.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.practice.onlineShop.entities.Address;
 import com.practice.onlineShop.entities.Product;
 import com.practice.onlineShop.entities.User;
@@ -7,6 +8,8 @@ import com.practice.onlineShop.enums.Currencies;
 import com.practice.onlineShop.enums.Roles;
 import com.practice.onlineShop.repositories.ProductRepository;
 import com.practice.onlineShop.repositories.UserRepository;
+import com.practice.onlineShop.vos.ProductImportErrorVO;
+import com.practice.onlineShop.vos.ProductImportResultVO;
 import com.practice.onlineShop.vos.ProductVo;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,11 +18,14 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import com.practice.onlineShop.UtilsComponent;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
@@ -28,8 +34,11 @@ import static com.practice.onlineShop.UtilsComponent.LOCALHOST;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpEntity.EMPTY;
+import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.http.HttpMethod.PATCH;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT)
 class ProductControllerIntegrationTest {
@@ -63,6 +72,15 @@ class ProductControllerIntegrationTest {
     @Autowired
     private UtilsComponent utilsComponent;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private <T> ResponseEntity<T> getWithIfNoneMatch(String path, String eTag, Class<T> responseType) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        return testRestTemplate.exchange(LOCALHOST + port + path, GET, new HttpEntity<>(headers), responseType);
+    }
+
     @Test
     public void contextLoads(){
         assertThat(productController).isNotNull();
@@ -169,6 +187,282 @@ class ProductControllerIntegrationTest {
         assertThat(products[1].getCode()).contains("aProductCode2");
     }
 
+    @Test
+    public void getProductsWithLimitShouldReturnOnePageAndATokenForTheNextOne(){
+        productRepository.deleteAll();
+        utilsComponent.storedTwoProductsInDB("aPagedProductCode", "aPagedProductCode2");
+
+        ResponseEntity<ProductVo[]> firstPage = testRestTemplate.getForEntity(LOCALHOST + port + "/product?limit=1", ProductVo[].class);
+        String nextPageToken = firstPage.getHeaders().getFirst(ProductController.NEXT_PAGE_TOKEN_HEADER);
+        ResponseEntity<ProductVo[]> secondPage = testRestTemplate.getForEntity(LOCALHOST + port + "/product?limit=1&pageToken=" + nextPageToken,
+                ProductVo[].class);
+
+        assertThat(firstPage.getBody()).extracting(ProductVo::getCode).containsExactly("aPagedProductCode");
+        assertThat(nextPageToken).isNotNull();
+        assertThat(secondPage.getBody()).extracting(ProductVo::getCode).containsExactly("aPagedProductCode2");
+        assertThat(secondPage.getHeaders().containsKey(ProductController.NEXT_PAGE_TOKEN_HEADER)).isFalse();
+    }
+
+    @Test
+    public void getProductWithCurrencyShouldConvertThePrice(){
+        Product product = utilsComponent.generateProduct("aConvertedProduct");
+        product.setCurrency(Currencies.EUR);
+        product.setPrice(1000);
+        productRepository.save(product);
+
+        ProductVo convertedProduct = testRestTemplate.getForObject(LOCALHOST + port + "/product/aConvertedProduct?currency=RON", ProductVo.class);
+        ProductVo originalProduct = testRestTemplate.getForObject(LOCALHOST + port + "/product/aConvertedProduct", ProductVo.class);
+
+        assertThat(convertedProduct.getCurrency()).isEqualTo(Currencies.RON);
+        assertThat(convertedProduct.getPrice()).isEqualTo(4970);
+        assertThat(originalProduct.getCurrency()).isEqualTo(Currencies.EUR);
+        assertThat(originalProduct.getPrice()).isEqualTo(1000);
+    }
+
+    @Test
+    public void getProductsWithFiltersShouldReturnOnlyTheMatchingProducts(){
+        Product cheapProduct = utilsComponent.generateProduct("aFilteredCheapProduct");
+        cheapProduct.setCurrency(Currencies.EUR);
+        cheapProduct.setPrice(3);
+        productRepository.save(cheapProduct);
+        Product expensiveProduct = utilsComponent.generateProduct("aFilteredExpensiveProduct");
+        expensiveProduct.setCurrency(Currencies.EUR);
+        expensiveProduct.setPrice(3000);
+        productRepository.save(expensiveProduct);
+
+        ProductVo[] products = testRestTemplate.getForObject(LOCALHOST + port + "/product?priceCurrency=EUR&valid=true&minPrice=1&maxPrice=5",
+                ProductVo[].class);
+
+        assertThat(products).extracting(ProductVo::getCode).contains("aFilteredCheapProduct").doesNotContain("aFilteredExpensiveProduct");
+        assertThat(products).allMatch(product -> product.getCurrency() == Currencies.EUR && product.isValid()
+                && product.getPrice() >= 1 && product.getPrice() <= 5);
+    }
+
+    @Test
+    public void getProductsWhenPageTokenIsInvalidShouldReturnBadRequest(){
+        ResponseEntity<String> response = testRestTemplate.getForEntity(LOCALHOST + port + "/product?pageToken=notAToken", String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Token-ul de paginare este invalid!");
+    }
+
+    @Test
+    public void exportProductsAsNdjsonShouldWriteOneProductPerLine() throws IOException {
+        utilsComponent.storedTwoProductsInDB("anExportedProductCode", "anExportedProductCode2");
+
+        String export = testRestTemplate.getForObject(LOCALHOST + port + "/product/export", String.class);
+
+        String[] lines = export.split("\n");
+        assertThat(lines).hasSize((int) productRepository.count());
+        ProductVo firstProduct = objectMapper.readValue(lines[0], ProductVo.class);
+        assertThat(firstProduct.getCode()).isNotNull();
+        assertThat(export).contains("\"code\":\"anExportedProductCode2\"");
+    }
+
+    @Test
+    public void exportProductsAsJsonShouldWriteAnArrayWithTheWholeCatalog(){
+        utilsComponent.storedTwoProductsInDB("aJsonExportedProductCode", "aJsonExportedProductCode2");
+
+        ProductVo[] products = testRestTemplate.getForObject(LOCALHOST + port + "/product/export?format=JSON", ProductVo[].class);
+
+        assertThat(products).hasSize((int) productRepository.count());
+        assertThat(products).extracting(ProductVo::getCode).contains("aJsonExportedProductCode", "aJsonExportedProductCode2");
+    }
+
+    @Test
+    public void getProductWithCurrentETagShouldReturnNotModifiedUntilTheStockChanges(){
+        utilsComponent.storedTwoProductsInDB("anETagProductCode", "anETagProductCode2");
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+
+        ResponseEntity<ProductVo> firstResponse = testRestTemplate.getForEntity(LOCALHOST + port + "/product/anETagProductCode", ProductVo.class);
+        String eTag = firstResponse.getHeaders().getETag();
+        ResponseEntity<ProductVo> notModifiedResponse = getWithIfNoneMatch("/product/anETagProductCode", eTag, ProductVo.class);
+        restTemplateForPatch.exchange(LOCALHOST + port + "/product/anETagProductCode/3/" + admin.getId(), PATCH, EMPTY, Void.class);
+        ResponseEntity<ProductVo> modifiedResponse = getWithIfNoneMatch("/product/anETagProductCode", eTag, ProductVo.class);
+
+        assertThat(eTag).isNotNull();
+        assertThat(notModifiedResponse.getStatusCode()).isEqualTo(NOT_MODIFIED);
+        assertThat(notModifiedResponse.getBody()).isNull();
+        assertThat(modifiedResponse.getStatusCode()).isEqualTo(OK);
+        assertThat(modifiedResponse.getBody().getStock()).isEqualTo(firstResponse.getBody().getStock() + 3);
+        assertThat(modifiedResponse.getHeaders().getETag()).isNotEqualTo(eTag);
+    }
+
+    @Test
+    public void getProductsWithCurrentETagShouldReturnNotModifiedUntilTheCatalogChanges(){
+        ResponseEntity<ProductVo[]> firstResponse = testRestTemplate.getForEntity(LOCALHOST + port + "/product", ProductVo[].class);
+        String eTag = firstResponse.getHeaders().getETag();
+        ResponseEntity<ProductVo[]> notModifiedResponse = getWithIfNoneMatch("/product", eTag, ProductVo[].class);
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        ProductVo productVo = new ProductVo();
+        productVo.setCode("aProductAddedAfterETag");
+        productVo.setCurrency(Currencies.RON);
+        testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + admin.getId(), productVo, Void.class);
+        ResponseEntity<ProductVo[]> modifiedResponse = getWithIfNoneMatch("/product", eTag, ProductVo[].class);
+
+        assertThat(notModifiedResponse.getStatusCode()).isEqualTo(NOT_MODIFIED);
+        assertThat(modifiedResponse.getStatusCode()).isEqualTo(OK);
+        assertThat(modifiedResponse.getHeaders().getETag()).isNotEqualTo(eTag);
+    }
+
+    @Test
+    public void getCatalogShouldServeTheValidProductsFromTheSnapshot() throws InterruptedException {
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        addProductThroughApi("aSnapshotProductCode", true, admin);
+        addProductThroughApi("aSnapshotProductCode2", true, admin);
+        addProductThroughApi("anInvalidSnapshotProductCode", false, admin);
+
+        // snapshot-ul se reconstruieste asincron, dupa cel mult refresh-interval-ms
+        ResponseEntity<ProductVo[]> response = testRestTemplate.getForEntity(LOCALHOST + port + "/product/catalog", ProductVo[].class);
+        for(int attempt = 0; attempt < 50 && !containsCode(response.getBody(), "aSnapshotProductCode2"); attempt++){
+            Thread.sleep(100);
+            response = testRestTemplate.getForEntity(LOCALHOST + port + "/product/catalog", ProductVo[].class);
+        }
+
+        assertThat(response.getBody()).extracting(ProductVo::getCode).contains("aSnapshotProductCode", "aSnapshotProductCode2")
+                .doesNotContain("anInvalidSnapshotProductCode");
+        assertThat(response.getHeaders().getFirst(ProductController.SNAPSHOT_AGE_HEADER)).isNotNull();
+        assertThat(response.getHeaders().getFirst(ProductController.SNAPSHOT_BUILD_DURATION_HEADER)).isNotNull();
+        assertThat(getWithIfNoneMatch("/product/catalog", response.getHeaders().getETag(), ProductVo[].class).getStatusCode())
+                .isEqualTo(NOT_MODIFIED);
+    }
+
+    @Test
+    public void importProductsFromCsvShouldUpsertByCodeAndReportTheInvalidRows(){
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        productRepository.save(utilsComponent.generateProduct("anImportedExistingProduct"));
+        String csv = "code,description,price,stock,valid,currency\n" +
+                "anImportedExistingProduct,\"updated, from csv\",2500,7,true,EUR\n" +
+                "anImportedNewProduct,a new product,100,3,false,RON\n" +
+                "anImportedInvalidProduct,negative price,-1,3,true,RON\n" +
+                "anImportedUnknownCurrency,a product,100,3,true,GBP\n" +
+                "anImportedOverflowingStock,a product,100,4294967297,true,RON\n";
+
+        ResponseEntity<ProductImportResultVO> response = testRestTemplate.postForEntity(
+                LOCALHOST + port + "/product/import/" + admin.getId() + "?format=CSV", csv, ProductImportResultVO.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(OK);
+        ProductImportResultVO result = response.getBody();
+        assertThat(result.getRowsRead()).isEqualTo(5);
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getFailed()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(ProductImportErrorVO::getRow).containsExactly(4L, 5L, 6L);
+
+        Product updatedProduct = productRepository.findByCode("anImportedExistingProduct").get();
+        assertThat(updatedProduct.getDescription()).isEqualTo("updated, from csv");
+        assertThat(updatedProduct.getPrice()).isEqualTo(2500);
+        assertThat(updatedProduct.getStock()).isEqualTo(7);
+        assertThat(updatedProduct.getCurrency()).isEqualTo(Currencies.EUR);
+        Product newProduct = productRepository.findByCode("anImportedNewProduct").get();
+        assertThat(newProduct.isValid()).isFalse();
+        assertThat(newProduct.getStock()).isEqualTo(3);
+        assertThat(productRepository.findByCode("anImportedInvalidProduct")).isEmpty();
+        assertThat(productRepository.findByCode("anImportedOverflowingStock")).isEmpty();
+    }
+
+    @Test
+    public void importProductsWithoutAStockColumnShouldKeepTheStockOfExistingProducts(){
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        productRepository.save(utilsComponent.generateProduct("aPriceOnlyImportedProduct"));
+        String csv = "code,price,currency\n" +
+                "aPriceOnlyImportedProduct,3000,RON\n";
+        String ndjson = "{\"code\":\"aPriceOnlyImportedProduct\",\"price\":3500,\"valid\":true,\"currency\":\"RON\"}\n";
+
+        ProductImportResultVO csvResult = testRestTemplate.postForObject(
+                LOCALHOST + port + "/product/import/" + admin.getId() + "?format=CSV", csv, ProductImportResultVO.class);
+        ProductImportResultVO ndjsonResult = testRestTemplate.postForObject(
+                LOCALHOST + port + "/product/import/" + admin.getId() + "?format=NDJSON", ndjson, ProductImportResultVO.class);
+
+        assertThat(csvResult.getUpdated()).isEqualTo(1);
+        assertThat(ndjsonResult.getUpdated()).isEqualTo(1);
+        Product updatedProduct = productRepository.findByCode("aPriceOnlyImportedProduct").get();
+        assertThat(updatedProduct.getPrice()).isEqualTo(3500);
+        assertThat(updatedProduct.getStock()).isEqualTo(1);
+    }
+
+    @Test
+    public void importProductsFromNdjsonShouldApplyRepeatedCodesInOrder(){
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        String ndjson = "{\"code\":\"anNdjsonProduct\",\"price\":100,\"stock\":1,\"valid\":true,\"currency\":\"USD\"}\n" +
+                "not json\n" +
+                "{\"code\":\"anNdjsonProduct\",\"price\":200,\"stock\":2,\"valid\":true,\"currency\":\"USD\"}\n";
+
+        ProductImportResultVO result = testRestTemplate.postForObject(
+                LOCALHOST + port + "/product/import/" + admin.getId() + "?format=NDJSON", ndjson, ProductImportResultVO.class);
+
+        assertThat(result.getInserted()).isEqualTo(1);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(ProductImportErrorVO::getRow).containsExactly(2L);
+        assertThat(productRepository.findByCode("anNdjsonProduct").get().getPrice()).isEqualTo(200);
+    }
+
+    @Test
+    public void importProductsWhenUserIsNotAdminShouldNotImportAnything(){
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        String csv = "code,price,currency\naForbiddenImportedProduct,100,RON\n";
+
+        ResponseEntity<String> response = testRestTemplate.postForEntity(
+                LOCALHOST + port + "/product/import/" + client.getId() + "?format=CSV", csv, String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(BAD_REQUEST);
+        assertThat(productRepository.findByCode("aForbiddenImportedProduct")).isEmpty();
+    }
+
+    @Test
+    public void addProductShouldSeeARoleAddedAfterTheRolesWereCached(){
+        User user = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        ProductVo productVo = new ProductVo();
+        productVo.setCode("aProductAddedAfterRoleChange");
+        productVo.setCurrency(Currencies.RON);
+
+        ResponseEntity<String> forbiddenResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + user.getId(), productVo, String.class);
+        User storedUser = userRepository.findWithRolesById(user.getId()).get();
+        storedUser.getRoles().add(Roles.ADMIN);
+        userRepository.save(storedUser);
+        ResponseEntity<String> allowedResponse = testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + user.getId(), productVo, String.class);
+
+        assertThat(forbiddenResponse.getStatusCode()).isEqualTo(BAD_REQUEST);
+        assertThat(allowedResponse.getStatusCode()).isEqualTo(OK);
+        assertThat(productRepository.findByCode("aProductAddedAfterRoleChange")).isPresent();
+    }
+
+    private void addProductThroughApi(String code, boolean valid, User admin) {
+        ProductVo productVo = new ProductVo();
+        productVo.setCode(code);
+        productVo.setValid(valid);
+        productVo.setCurrency(Currencies.RON);
+        testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + admin.getId(), productVo, Void.class);
+    }
+
+    private boolean containsCode(ProductVo[] products, String code) {
+        for(ProductVo product : products){
+            if(code.equals(product.getCode())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void searchProductsShouldFindProductsAddedThroughTheApi(){
+        User admin = utilsComponent.saveUserWithRole(Roles.ADMIN);
+        ProductVo productVo = new ProductVo();
+        productVo.setCode("aSearchableProductCode");
+        productVo.setDescription("A waterproof hiking backpack");
+        productVo.setCurrency(Currencies.RON);
+        testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + admin.getId(), productVo, Void.class);
+
+        ResponseEntity<ProductVo[]> byDescription = testRestTemplate.getForEntity(LOCALHOST + port + "/product/search?q=hiking waterproof",
+                ProductVo[].class);
+        ResponseEntity<ProductVo[]> byCodePrefix = testRestTemplate.getForEntity(LOCALHOST + port + "/product/search?q=aSearchable",
+                ProductVo[].class);
+
+        assertThat(byDescription.getBody()).extracting(ProductVo::getCode).containsExactly("aSearchableProductCode");
+        assertThat(byDescription.getHeaders().getFirst(ProductController.TOTAL_COUNT_HEADER)).isEqualTo("1");
+        assertThat(byCodePrefix.getBody()).extracting(ProductVo::getCode).containsExactly("aSearchableProductCode");
+    }
+
     @Test
     public void updateProductWhenUserIsEditorShouldUpdateTheProduct(){
         Product product = utilsComponent.generateProduct("aProduct");
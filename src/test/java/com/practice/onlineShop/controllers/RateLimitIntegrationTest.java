@@ -0,0 +1,63 @@
+package com.practice.onlineShop.controllers;
+
+import com.practice.onlineShop.UtilsComponent;
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.vos.ProductVo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import static com.practice.onlineShop.UtilsComponent.LOCALHOST;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+// un singur token pentru fiecare client, care nu se reumple in timpul testului
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+        "shop.rate-limit.default.requests-per-second=0.001",
+        "shop.rate-limit.default.burst=1",
+        "shop.rate-limit.roles.ADMIN.requests-per-second=0.001",
+        "shop.rate-limit.roles.ADMIN.burst=1"})
+class RateLimitIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+
+    @Autowired
+    private UtilsComponent utilsComponent;
+
+    @Test
+    public void addProduct_overTheLimit_shouldReturnTooManyRequests() {
+        User userEntity = utilsComponent.saveUserWithRole(Roles.ADMIN);
+
+        ResponseEntity<String> accepted = testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + userEntity.getId(),
+                generateProductVo("aRateLimitedProductCode"), String.class);
+        assertThat(accepted.getStatusCode()).isEqualTo(OK);
+
+        ResponseEntity<String> rejected = testRestTemplate.postForEntity(LOCALHOST + port + "/product/" + userEntity.getId(),
+                generateProductVo("anotherRateLimitedProductCode"), String.class);
+        assertThat(rejected.getStatusCode()).isEqualTo(TOO_MANY_REQUESTS);
+        assertThat(rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isNotNull();
+    }
+
+    private ProductVo generateProductVo(String productCode) {
+        ProductVo productVO = new ProductVo();
+        productVO.setCode(productCode);
+        productVO.setPrice(100);
+        productVO.setCurrency(Currencies.RON);
+        productVO.setStock(12);
+        productVO.setDescription("A product description");
+        productVO.setValid(true);
+        return productVO;
+    }
+}
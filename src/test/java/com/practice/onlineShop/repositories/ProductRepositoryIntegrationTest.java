@@ -2,7 +2,10 @@ package com.practice.onlineShop.repositories;
 
 import com.practice.onlineShop.entities.Product;
 import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.vos.ProductFilterVO;
+import com.practice.onlineShop.vos.ProductVo;
 
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
 
@@ -11,13 +14,16 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 
 @RunWith(SpringRunner.class)
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.practice.onlineShop.repositories.CapturingStatementInspector")
 class ProductRepositoryIntegrationTest{
     @Autowired
     private ProductRepository productRepository;
@@ -59,4 +65,107 @@ class ProductRepositoryIntegrationTest{
 
         assertThat(productFromDB).isNotPresent();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void decrementStockIfAvailableShouldIncrementTheVersion(){
+        Product product = new Product();
+        product.setCode("aVersionedProduct");
+        product.setPrice(100);
+        product.setStock(5);
+        product.setValid(true);
+        product.setCurrency(Currencies.USD);
+        product.setDescription("a versioned product");
+        testEntityManager.persistAndFlush(product);
+        long initialVersion = product.getVersion();
+
+        int updatedRows = productRepository.decrementStockIfAvailable(product.getId(), 2);
+        testEntityManager.clear();
+
+        Product productFromDB = testEntityManager.find(Product.class, product.getId());
+        assertThat(updatedRows).isEqualTo(1);
+        assertThat(productFromDB.getStock()).isEqualTo(3);
+        assertThat(productFromDB.getVersion()).isEqualTo(initialVersion + 1);
+    }
+
+    @Test
+    public void findPageShouldReturnOnlyTheProductsMatchingTheFilters(){
+        Product cheapUsdProduct = persistProduct("aCheapUsdProduct", Currencies.USD, 10, true);
+        persistProduct("anExpensiveUsdProduct", Currencies.USD, 1000, true);
+        persistProduct("anInvalidUsdProduct", Currencies.USD, 10, false);
+        persistProduct("aCheapEurProduct", Currencies.EUR, 10, true);
+
+        ProductFilterVO filter = new ProductFilterVO();
+        filter.setPriceCurrency(Currencies.USD);
+        filter.setValid(true);
+        filter.setMinPrice(5L);
+        filter.setMaxPrice(100L);
+        List<ProductVo> products = productRepository.findPage(filter, 0, 10);
+
+        assertThat(products).extracting(ProductVo::getCode).containsExactly(cheapUsdProduct.getCode());
+    }
+
+    @Test
+    public void findVoByCodeShouldReturnTheProductWithoutManagingAnEntity(){
+        Product product = persistProduct("aProjectedProduct", Currencies.RON, 42, true);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        Optional<ProductVo> productVo = productRepository.findVoByCode("aProjectedProduct");
+
+        assertThat(productVo).isPresent();
+        assertThat(productVo.get().getId()).isEqualTo(product.getId());
+        assertThat(productVo.get().getPrice()).isEqualTo(42);
+        assertThat(productVo.get().getCurrency()).isEqualTo(Currencies.RON);
+        assertThat(productVo.get().getCode()).isEqualTo("aProjectedProduct");
+        assertThat(productVo.get().getDescription()).isEqualTo("a filtered product");
+        assertThat(productVo.get().getStock()).isEqualTo(1);
+        assertThat(productVo.get().isValid()).isTrue();
+        assertThat(productRepository.findVoByCode("aMissingProduct")).isEmpty();
+    }
+
+    @Test
+    public void findPageShouldUseTheProductIndexes(){
+        ProductFilterVO currencyAndValid = new ProductFilterVO();
+        currencyAndValid.setPriceCurrency(Currencies.USD);
+        currencyAndValid.setValid(true);
+        assertThat(explainFindPage(currencyAndValid)).contains("IDX_PRODUCT_CURRENCY_VALID_PRICE");
+
+        ProductFilterVO validAndPrice = new ProductFilterVO();
+        validAndPrice.setValid(true);
+        validAndPrice.setMinPrice(5L);
+        validAndPrice.setMaxPrice(100L);
+        assertThat(explainFindPage(validAndPrice)).contains("IDX_PRODUCT_VALID_PRICE");
+
+        ProductFilterVO currencyValidAndMaxPrice = new ProductFilterVO();
+        currencyValidAndMaxPrice.setPriceCurrency(Currencies.EUR);
+        currencyValidAndMaxPrice.setValid(false);
+        currencyValidAndMaxPrice.setMaxPrice(100L);
+        assertThat(explainFindPage(currencyValidAndMaxPrice)).contains("IDX_PRODUCT_CURRENCY_VALID_PRICE");
+    }
+
+    // planul H2 pentru SQL-ul pe care Hibernate l-a generat la findPage; parametrii raman nelegati
+    private String explainFindPage(ProductFilterVO filter) {
+        CapturingStatementInspector.STATEMENTS.clear();
+        productRepository.findPage(filter, 0, 10);
+        assertThat(CapturingStatementInspector.STATEMENTS).hasSize(1);
+        String sql = CapturingStatementInspector.STATEMENTS.get(0);
+        return testEntityManager.getEntityManager().unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1).toUpperCase();
+            }
+        });
+    }
+
+    private Product persistProduct(String code, Currencies currency, long price, boolean valid) {
+        Product product = new Product();
+        product.setCode(code);
+        product.setPrice(price);
+        product.setStock(1);
+        product.setValid(valid);
+        product.setCurrency(currency);
+        product.setDescription("a filtered product");
+        return testEntityManager.persistFlushFind(product);
+    }
+}
@@ -0,0 +1,76 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidAccessTokenException;
+import com.practice.onlineShop.exceptions.InvalidCredentialsException;
+import com.practice.onlineShop.repositories.UserRepository;
+import com.practice.onlineShop.vos.AccessTokenVO;
+import com.practice.onlineShop.vos.LoginVO;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class AccessTokenServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AccessTokenService accessTokenService = new AccessTokenService(userRepository, "aTestSecret", 60000);
+
+    @Test
+    public void login_withTheRightPassword_shouldIssueATokenWithTheUserRoles() throws Exception {
+        when(userRepository.findWithRolesByUsername("aClient")).thenReturn(Optional.of(user(7L, "aClient", "aPassword", Roles.CLIENT, Roles.EDITOR)));
+
+        AccessTokenVO accessTokenVO = accessTokenService.login(login("aClient", "aPassword"));
+        AccessTokenService.AccessToken accessToken = accessTokenService.verify(accessTokenVO.getAccessToken());
+
+        assertThat(accessTokenVO.getUserId()).isEqualTo(7L);
+        assertThat(accessToken.getUserId()).isEqualTo(7L);
+        assertThat(accessToken.getRoleMask()).isEqualTo(Roles.CLIENT.mask() | Roles.EDITOR.mask());
+        assertThat(accessToken.getExpiresAt()).isEqualTo(accessTokenVO.getExpiresAt());
+    }
+
+    @Test
+    public void login_withAWrongPasswordOrUnknownUser_shouldThrow() {
+        when(userRepository.findWithRolesByUsername(anyString())).thenReturn(Optional.empty());
+        when(userRepository.findWithRolesByUsername("aClient")).thenReturn(Optional.of(user(7L, "aClient", "aPassword", Roles.CLIENT)));
+
+        assertThatThrownBy(() -> accessTokenService.login(login("aClient", "aWrongPassword"))).isInstanceOf(InvalidCredentialsException.class);
+        assertThatThrownBy(() -> accessTokenService.login(login("anUnknownUser", "aPassword"))).isInstanceOf(InvalidCredentialsException.class);
+    }
+
+    @Test
+    public void verify_whenTheTokenIsTamperedExpiredOrSignedWithAnotherSecret_shouldThrow() {
+        String token = accessTokenService.issue(7L, Roles.CLIENT.mask(), System.currentTimeMillis() + 60000);
+        String tamperedToken = "7." + Roles.ADMIN.mask() + token.substring(token.indexOf('.', 2));
+        String expiredToken = accessTokenService.issue(7L, Roles.CLIENT.mask(), System.currentTimeMillis() - 1);
+        String foreignToken = new AccessTokenService(userRepository, "anotherSecret", 60000)
+                .issue(7L, Roles.CLIENT.mask(), System.currentTimeMillis() + 60000);
+
+        assertThatThrownBy(() -> accessTokenService.verify(tamperedToken)).isInstanceOf(InvalidAccessTokenException.class);
+        assertThatThrownBy(() -> accessTokenService.verify(expiredToken)).isInstanceOf(InvalidAccessTokenException.class);
+        assertThatThrownBy(() -> accessTokenService.verify(foreignToken)).isInstanceOf(InvalidAccessTokenException.class);
+        assertThatThrownBy(() -> accessTokenService.verify("notAToken")).isInstanceOf(InvalidAccessTokenException.class);
+    }
+
+    private LoginVO login(String username, String password) {
+        LoginVO loginVO = new LoginVO();
+        loginVO.setUsername(username);
+        loginVO.setPassword(password);
+        return loginVO;
+    }
+
+    private User user(long id, String username, String password, Roles... roles) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword(password);
+        user.setRoles(Arrays.asList(roles));
+        return user;
+    }
+}
@@ -0,0 +1,75 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.AuditActions;
+import com.practice.onlineShop.enums.AuditFsyncPolicies;
+import com.practice.onlineShop.vos.AuditRecordVO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuditJournalTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void record_shouldBeWrittenAndFoundByTheReader() throws Exception {
+        String directory = temporaryFolder.getRoot().getPath();
+        AuditJournal auditJournal = new AuditJournal(meterRegistry, true, directory, 16, 1024 * 1024, 10, AuditFsyncPolicies.BATCH, 1000, 1);
+        auditJournal.start();
+
+        auditJournal.record(AuditActions.ADD_STOCK, 1L, null, "aCode\twith a tab", 5);
+        auditJournal.record(AuditActions.DELIVER_ORDER, 2L, 10L, null, null);
+        auditJournal.record(AuditActions.ADD_PRODUCT, 1L, null, "-", null);
+        auditJournal.stop();
+
+        AuditJournalReader auditJournalReader = new AuditJournalReader(directory, 100);
+        List<AuditRecordVO> customerRecords = auditJournalReader.query(1L, null, null, null, null);
+        assertThat(customerRecords).extracting(AuditRecordVO::getAction).containsExactly(AuditActions.ADD_STOCK, AuditActions.ADD_PRODUCT);
+        assertThat(customerRecords).extracting(AuditRecordVO::getProductCode).containsExactly("aCode\twith a tab", "-");
+        assertThat(customerRecords.get(0).getQuantity()).isEqualTo(5);
+
+        List<AuditRecordVO> deliveries = auditJournalReader.query(null, AuditActions.DELIVER_ORDER, null, null, null);
+        assertThat(deliveries).hasSize(1);
+        assertThat(deliveries.get(0).getOrderId()).isEqualTo(10L);
+        assertThat(deliveries.get(0).getProductCode()).isNull();
+        assertThat(meterRegistry.get("shop.audit.written").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    public void record_whenTheBufferIsFull_shouldDropTheRecordWithoutBlocking() {
+        AuditJournal auditJournal = new AuditJournal(meterRegistry, true, temporaryFolder.getRoot().getPath(), 4, 1024, 10,
+                AuditFsyncPolicies.NEVER, 1000, 1);
+
+        // firul care scrie nu este pornit, deci nimic nu elibereaza buffer-ul
+        for(int i = 0; i < 6; i++){
+            auditJournal.record(AuditActions.ADD_ORDER, 1L, null, null, 1);
+        }
+
+        assertThat(auditJournal.getPendingRecords()).isEqualTo(4);
+        assertThat(meterRegistry.get("shop.audit.dropped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void writer_overMaxFileBytes_shouldRotateAndKeepOnlyMaxFiles() throws Exception {
+        String directory = temporaryFolder.getRoot().getPath();
+        AuditJournal auditJournal = new AuditJournal(meterRegistry, true, directory, 1024, 1, 2, AuditFsyncPolicies.NEVER, 1000, 1);
+        auditJournal.start();
+
+        for(long orderId = 1; orderId <= 5; orderId++){
+            auditJournal.record(AuditActions.CANCEL_ORDER, 3L, orderId, null, null);
+        }
+        auditJournal.stop();
+
+        assertThat(AuditJournalReader.listJournalFiles(auditJournal.getDirectory())).hasSize(2);
+        assertThat(new AuditJournalReader(directory, 100).query(3L, null, null, null, null))
+                .extracting(AuditRecordVO::getOrderId).containsExactly(4L, 5L);
+    }
+}
@@ -0,0 +1,77 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.Currencies;
+import com.practice.onlineShop.vos.ProductVo;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CurrencyConverterTest {
+
+    private final CurrencyConverter currencyConverter = new CurrencyConverter(new MockEnvironment()
+            .withProperty("shop.currency.rates.EUR", "1")
+            .withProperty("shop.currency.rates.USD", "1.08")
+            .withProperty("shop.currency.rates.RON", "4.97"));
+
+    @Test
+    public void convert_shouldUseTheRatesAndRoundHalfEven() {
+        assertThat(currencyConverter.convert(10000, Currencies.EUR, Currencies.RON)).isEqualTo(49700);
+        assertThat(currencyConverter.convert(49700, Currencies.RON, Currencies.EUR)).isEqualTo(10000);
+        // 100 RON = 20.1207... EUR
+        assertThat(currencyConverter.convert(10000, Currencies.RON, Currencies.EUR)).isEqualTo(2012);
+        // 50 bani = 10.86... centi USD
+        assertThat(currencyConverter.convert(50, Currencies.RON, Currencies.USD)).isEqualTo(11);
+        // -248.5 bani se rotunjeste la par
+        assertThat(currencyConverter.convert(-50, Currencies.EUR, Currencies.RON)).isEqualTo(-248);
+        assertThat(currencyConverter.convert(123, Currencies.USD, Currencies.USD)).isEqualTo(123);
+    }
+
+    @Test
+    public void convert_whenTheProductWouldOverflowALong_shouldStillBeExact() {
+        long amount = Long.MAX_VALUE / 10;
+
+        assertThat(currencyConverter.convert(amount, Currencies.RON, Currencies.EUR))
+                .isEqualTo(new BigDecimal(amount).divide(new BigDecimal("4.97"), 0, BigDecimal.ROUND_HALF_EVEN).longValueExact());
+    }
+
+    @Test
+    public void updateRates_shouldReplaceAllRatesAtOnce() {
+        CurrencyConverter.Rates oldRates = currencyConverter.getRates();
+        Map<Currencies, BigDecimal> newRates = new EnumMap<>(Currencies.class);
+        newRates.put(Currencies.EUR, BigDecimal.ONE);
+        newRates.put(Currencies.USD, new BigDecimal("1.10"));
+        newRates.put(Currencies.RON, new BigDecimal("5"));
+
+        currencyConverter.updateRates(newRates);
+
+        assertThat(currencyConverter.getRates().getVersion()).isEqualTo(oldRates.getVersion() + 1);
+        assertThat(currencyConverter.convert(100, Currencies.EUR, Currencies.RON)).isEqualTo(500);
+        assertThat(oldRates.convert(100, Currencies.EUR, Currencies.RON)).isEqualTo(497);
+
+        newRates.remove(Currencies.USD);
+        assertThatThrownBy(() -> currencyConverter.updateRates(newRates)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(currencyConverter.convert(100, Currencies.EUR, Currencies.USD)).isEqualTo(110);
+    }
+
+    @Test
+    public void convertAll_shouldNotModifyTheOriginalProducts() {
+        ProductVo product = new ProductVo(1, "aCode", "a description", 10000, 1, true, Currencies.EUR);
+        List<ProductVo> products = new ArrayList<>(Arrays.asList(product));
+
+        currencyConverter.convertAll(products, Currencies.RON);
+
+        assertThat(products.get(0).getPrice()).isEqualTo(49700);
+        assertThat(products.get(0).getCurrency()).isEqualTo(Currencies.RON);
+        assertThat(product.getPrice()).isEqualTo(10000);
+        assertThat(product.getCurrency()).isEqualTo(Currencies.EUR);
+    }
+}
@@ -0,0 +1,113 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.enums.Roles;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+public class CustomerRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserRolesCache userRolesCache = mock(UserRolesCache.class);
+
+    @Test
+    public void tryAcquire_overTheBurst_shouldRejectOnlyThatCustomer() {
+        when(userRolesCache.peekRoleMask(anyLong())).thenReturn(-1);
+        CustomerRateLimiter customerRateLimiter = new CustomerRateLimiter(userRolesCache, meterRegistry, environment());
+
+        assertThat(customerRateLimiter.tryAcquire(1L)).isZero();
+        assertThat(customerRateLimiter.tryAcquire(1L)).isZero();
+        assertThat(customerRateLimiter.tryAcquire(1L)).isPositive();
+        assertThat(customerRateLimiter.tryAcquire(2L)).isZero();
+        assertThat(meterRegistry.get("shop.rate-limit.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void tryAcquire_whenRolesAreCached_shouldUseTheMostGenerousRoleLimit() {
+        when(userRolesCache.peekRoleMask(1L)).thenReturn(Roles.CLIENT.mask() | Roles.ADMIN.mask());
+        CustomerRateLimiter customerRateLimiter = new CustomerRateLimiter(userRolesCache, meterRegistry, environment()
+                .withProperty("shop.rate-limit.roles.CLIENT.burst", "3")
+                .withProperty("shop.rate-limit.roles.ADMIN.burst", "5"));
+
+        for(int i = 0; i < 5; i++){
+            assertThat(customerRateLimiter.tryAcquire(1L)).isZero();
+        }
+        assertThat(customerRateLimiter.tryAcquire(1L)).isPositive();
+    }
+
+    @Test
+    public void tryAcquire_whenTheRolesChange_shouldUseTheNewLimit() {
+        when(userRolesCache.peekRoleMask(1L)).thenReturn(Roles.CLIENT.mask());
+        CustomerRateLimiter customerRateLimiter = new CustomerRateLimiter(userRolesCache, meterRegistry, environment()
+                .withProperty("shop.rate-limit.roles.ADMIN.burst", "5"));
+
+        customerRateLimiter.tryAcquire(1L);
+        customerRateLimiter.tryAcquire(1L);
+        assertThat(customerRateLimiter.tryAcquire(1L)).isPositive();
+
+        when(userRolesCache.peekRoleMask(1L)).thenReturn(Roles.ADMIN.mask());
+        assertThat(customerRateLimiter.tryAcquire(1L)).isZero();
+
+        // rolurile au iesit din cache: ramane ultima limita cunoscuta
+        when(userRolesCache.peekRoleMask(1L)).thenReturn(-1);
+        assertThat(customerRateLimiter.tryAcquire(1L)).isZero();
+    }
+
+    @Test
+    public void tryAcquire_withPermits_shouldChargeEveryPermit() {
+        when(userRolesCache.peekRoleMask(anyLong())).thenReturn(-1);
+        CustomerRateLimiter customerRateLimiter = new CustomerRateLimiter(userRolesCache, meterRegistry, environment());
+
+        assertThat(customerRateLimiter.tryAcquire(1L, 3)).isPositive();
+        assertThat(customerRateLimiter.tryAcquire(1L, 2)).isZero();
+        assertThat(customerRateLimiter.tryAcquire(1L)).isPositive();
+    }
+
+    @Test
+    public void tryAcquireAll_whenOneCustomerIsOverTheLimit_shouldGiveBackTheOtherTokens() {
+        when(userRolesCache.peekRoleMask(anyLong())).thenReturn(-1);
+        CustomerRateLimiter customerRateLimiter = new CustomerRateLimiter(userRolesCache, meterRegistry, environment());
+        customerRateLimiter.tryAcquire(2L, 2);
+
+        Map<Long, Integer> permitsByCustomerId = new LinkedHashMap<>();
+        permitsByCustomerId.put(1L, 2);
+        permitsByCustomerId.put(2L, 1);
+        assertThat(customerRateLimiter.tryAcquireAll(permitsByCustomerId)).isPositive();
+
+        assertThat(customerRateLimiter.tryAcquire(1L, 2)).isZero();
+    }
+
+    @Test
+    public void evictIdleBuckets_shouldKeepOnlyBucketsThatAreNotFull() throws Exception {
+        when(userRolesCache.peekRoleMask(anyLong())).thenReturn(-1);
+        CustomerRateLimiter customerRateLimiter = new CustomerRateLimiter(userRolesCache, meterRegistry, environment()
+                .withProperty("shop.rate-limit.idle-eviction-ms", "0"));
+
+        customerRateLimiter.tryAcquire(1L);
+        customerRateLimiter.tryAcquire(1L);
+        Thread.sleep(2);
+        customerRateLimiter.evictIdleBuckets();
+        assertThat(customerRateLimiter.getBucketCount()).isEqualTo(1);
+
+        CustomerRateLimiter fastRateLimiter = new CustomerRateLimiter(userRolesCache, new SimpleMeterRegistry(), new MockEnvironment()
+                .withProperty("shop.rate-limit.default.requests-per-second", "1000000000")
+                .withProperty("shop.rate-limit.idle-eviction-ms", "0"));
+        fastRateLimiter.tryAcquire(1L);
+        Thread.sleep(2);
+        fastRateLimiter.evictIdleBuckets();
+        assertThat(fastRateLimiter.getBucketCount()).isZero();
+    }
+
+    // un token la 1000 de secunde: bucket-ul nu se reumple in timpul testului
+    private MockEnvironment environment() {
+        return new MockEnvironment()
+                .withProperty("shop.rate-limit.default.requests-per-second", "0.001")
+                .withProperty("shop.rate-limit.default.burst", "2");
+    }
+}
@@ -0,0 +1,79 @@
+package com.practice.onlineShop.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.practice.onlineShop.entities.IdempotencyRecord;
+import com.practice.onlineShop.exceptions.IdempotencyKeyReusedException;
+import com.practice.onlineShop.repositories.IdempotencyRecordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class IdempotencyServiceTest {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void execute_whenPersistedKeyIsReusedForARequestWithTheSameHashCode_shouldRejectIt() throws Exception {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        when(idempotencyRecordRepository.findById("aKey")).thenReturn(Optional.empty());
+        when(idempotencyRecordRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        // "Aa" si "BB" au acelasi hashCode
+        idempotencyService().execute("aKey", "Aa", calls::incrementAndGet);
+        ArgumentCaptor<IdempotencyRecord> record = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(idempotencyRecordRepository).save(record.capture());
+
+        // dupa o repornire doar inregistrarea din baza de date mai stie de cheie
+        when(idempotencyRecordRepository.findById("aKey")).thenReturn(Optional.of(record.getValue()));
+        assertThatThrownBy(() -> idempotencyService().execute("aKey", "BB", calls::incrementAndGet))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+        idempotencyService().execute("aKey", "Aa", calls::incrementAndGet);
+
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void execute_whenTheCallCommitsOnItsOwn_shouldRunItOutsideTheKeyTransaction() throws Exception {
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                return ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null);
+            } finally {
+                inTransaction.set(false);
+            }
+        });
+        when(idempotencyRecordRepository.findById("aKey")).thenReturn(Optional.empty());
+        when(idempotencyRecordRepository.save(any())).thenThrow(new IllegalStateException());
+
+        AtomicBoolean calledInTransaction = new AtomicBoolean(true);
+        idempotencyService().execute("aKey", "aRequest", true, () -> calledInTransaction.set(inTransaction.get()));
+
+        // comanda este deja scrisa: o cheie care nu s-a putut salva nu transforma cererea intr-o eroare
+        assertThat(calledInTransaction.get()).isFalse();
+        verify(idempotencyRecordRepository).save(any());
+        assertThat(meterRegistry.get("shop.idempotency.persist.failures").counter().count()).isEqualTo(1);
+    }
+
+    private IdempotencyService idempotencyService() {
+        IdempotencyService idempotencyService = new IdempotencyService(idempotencyRecordRepository, transactionTemplate, new ObjectMapper(), meterRegistry);
+        ReflectionTestUtils.setField(idempotencyService, "persistent", true);
+        ReflectionTestUtils.setField(idempotencyService, "maxKeys", 10);
+        ReflectionTestUtils.setField(idempotencyService, "ttlMillis", 60000L);
+        return idempotencyService;
+    }
+}
@@ -0,0 +1,82 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.UtilsComponent;
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.NotEnoughStockException;
+import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.vos.OrderVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"shop.order.group-commit.enabled=true", "shop.order.group-commit.max-wait-ms=50"})
+class OrderIntakePipelineIntegrationTest {
+
+    @Autowired
+    private OrderIntakePipeline orderIntakePipeline;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UtilsComponent utilsComponent;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void submitWhenManyClientsOrderConcurrentlyShouldCommitThemInBatchesWithoutOverselling() throws Exception {
+        User client = utilsComponent.saveUserWithRole(Roles.CLIENT);
+        Product product = utilsComponent.generateProduct("productForGroupCommit");
+        product.setStock(5);
+        productRepository.save(product);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(10);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> placedOrders = new ArrayList<>();
+        for(int i = 0; i < 10; i++){
+            placedOrders.add(executorService.submit(() -> {
+                start.await();
+                try {
+                    orderIntakePipeline.submit(createOrderVO(client, product));
+                    return true;
+                } catch (NotEnoughStockException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+
+        int successfulOrders = 0;
+        for(Future<Boolean> placedOrder : placedOrders){
+            if(placedOrder.get(30, TimeUnit.SECONDS)){
+                successfulOrders++;
+            }
+        }
+        executorService.shutdown();
+
+        assertThat(successfulOrders).isEqualTo(5);
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isZero();
+        assertThat(meterRegistry.get("shop.order.intake.batch.size").summary().totalAmount()).isEqualTo(10);
+    }
+
+    private OrderVO createOrderVO(User user, Product product) {
+        OrderVO orderVO = new OrderVO();
+        orderVO.setUserId((int) user.getId());
+        Map<Integer, Integer> orderMap = new HashMap<>();
+        orderMap.put((int) product.getId(), 1);
+        orderVO.setProductIdsToQuantity(orderMap);
+        return orderVO;
+    }
+}
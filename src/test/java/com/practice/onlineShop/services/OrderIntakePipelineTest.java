@@ -0,0 +1,89 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.exceptions.OrderIntakeFullException;
+import com.practice.onlineShop.mappers.OrderMapper;
+import com.practice.onlineShop.vos.OrderResultVO;
+import com.practice.onlineShop.vos.OrderVO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class OrderIntakePipelineTest {
+
+    private final OrderService orderService = mock(OrderService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final OrderIntakePipeline orderIntakePipeline =
+            new OrderIntakePipeline(orderService, mock(OrderMapper.class), meterRegistry, 10, 10, 1, 200);
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        orderIntakePipeline.stop();
+    }
+
+    @Test
+    public void submit_whenTheBatchFailsWithAnError_shouldFailTheCallerAndKeepTheWriterRunning() throws Exception {
+        when(orderService.placeOrders(anyList()))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(Collections.singletonList(new OrderResultVO()));
+        orderIntakePipeline.start();
+
+        assertThatThrownBy(() -> orderIntakePipeline.submit(new OrderVO()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(StackOverflowError.class);
+        orderIntakePipeline.submit(new OrderVO());
+    }
+
+    @Test
+    public void submit_whenTheOrderIsNotTakenInTime_shouldThrowOrderIntakeFullException() throws Exception {
+        CountDownLatch batchStarted = new CountDownLatch(1);
+        when(orderService.placeOrders(anyList())).thenAnswer(invocation -> {
+            batchStarted.countDown();
+            release.await();
+            return Collections.singletonList(new OrderResultVO());
+        });
+        orderIntakePipeline.start();
+        // primul lot tine firul ocupat, deci a doua comanda ramane in coada
+        CompletableFuture<Void> firstOrder = CompletableFuture.runAsync(() -> submitQuietly(new OrderVO()));
+        batchStarted.await();
+
+        assertThatThrownBy(() -> orderIntakePipeline.submit(new OrderVO())).isInstanceOf(OrderIntakeFullException.class);
+        assertThat(meterRegistry.get("shop.order.intake.timed-out").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        firstOrder.get(5, TimeUnit.SECONDS);
+        verify(orderService).placeOrders(anyList());
+    }
+
+    @Test
+    public void submit_whenTheBatchIsStillRunningAfterTheTimeout_shouldWaitForItsResult() throws Exception {
+        when(orderService.placeOrders(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return Collections.singletonList(new OrderResultVO());
+        });
+        orderIntakePipeline.start();
+
+        // comanda este deja intr-un lot care se poate scrie, deci apelantul nu primeste 503
+        orderIntakePipeline.submit(new OrderVO());
+        assertThat(meterRegistry.get("shop.order.intake.timed-out").counter().count()).isEqualTo(0);
+    }
+
+    private void submitQuietly(OrderVO orderVO) {
+        try {
+            orderIntakePipeline.submit(orderVO);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.vos.ProductVo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProductCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    public void get_whenProductIsCached_shouldNotLoadItAgain() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, true, 10, 60000);
+
+        productCache.get("aCode", () -> load("aCode", 1L));
+        ProductVo product = productCache.get("aCode", () -> load("aCode", 1L));
+
+        assertThat(product.getCode()).isEqualTo("aCode");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("shop.product.cache.hits").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shop.product.cache.misses").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidate_byIdOrCode_shouldReloadTheProduct() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, true, 10, 60000);
+
+        productCache.get("aCode", () -> load("aCode", 1L));
+        productCache.invalidate(1L);
+        productCache.get("aCode", () -> load("aCode", 1L));
+        productCache.invalidate("aCode");
+        productCache.get("aCode", () -> load("aCode", 1L));
+
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void get_whenAnotherProductIsInvalidatedDuringTheLoad_shouldStillCacheIt() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, true, 10, 60000);
+
+        productCache.get("aCode", () -> {
+            productCache.invalidate(2L);
+            productCache.invalidate("anotherCode");
+            return load("aCode", 1L);
+        });
+        productCache.get("aCode", () -> load("aCode", 1L));
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void get_whenTheSameProductIsInvalidatedDuringTheLoad_shouldNotCacheIt() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, true, 10, 60000);
+
+        productCache.get("aCode", () -> {
+            productCache.invalidate(1L);
+            return load("aCode", 1L);
+        });
+        productCache.get("aCode", () -> {
+            productCache.invalidate("aCode");
+            return load("aCode", 1L);
+        });
+        productCache.get("aCode", () -> load("aCode", 1L));
+
+        assertThat(loads.get()).isEqualTo(3);
+        productCache.get("aCode", () -> load("aCode", 1L));
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void get_whenMaxSizeIsExceeded_shouldEvictTheOldestProduct() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, true, 2, 60000);
+
+        productCache.get("aCode1", () -> load("aCode1", 1L));
+        productCache.get("aCode2", () -> load("aCode2", 2L));
+        productCache.get("aCode3", () -> load("aCode3", 3L));
+        productCache.get("aCode1", () -> load("aCode1", 1L));
+
+        assertThat(loads.get()).isEqualTo(4);
+        assertThat(meterRegistry.get("shop.product.cache.evictions").counter().count()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    public void get_whenEntryIsExpired_shouldLoadItAgain() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, true, 10, -1);
+
+        productCache.get("aCode", () -> load("aCode", 1L));
+        productCache.get("aCode", () -> load("aCode", 1L));
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("shop.product.cache.evictions").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void get_whenCacheIsDisabled_shouldAlwaysLoad() throws Exception {
+        ProductCache productCache = new ProductCache(meterRegistry, false, 10, 60000);
+
+        productCache.get("aCode", () -> load("aCode", 1L));
+        productCache.get("aCode", () -> load("aCode", 1L));
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private ProductVo load(String code, long id) {
+        loads.incrementAndGet();
+        ProductVo productVo = new ProductVo();
+        productVo.setId(id);
+        productVo.setCode(code);
+        return productVo;
+    }
+}
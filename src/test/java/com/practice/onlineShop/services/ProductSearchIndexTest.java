@@ -0,0 +1,71 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.repositories.ProductRepository;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ProductSearchIndexTest {
+
+    private final ProductSearchIndex productSearchIndex = new ProductSearchIndex(mock(ProductRepository.class));
+
+    @Test
+    public void search_shouldReturnProductsContainingEveryWordRankedByOccurrences() {
+        productSearchIndex.productChanged(product(1L, "TV-1", "Red phone case"));
+        productSearchIndex.productChanged(product(2L, "TV-2", "Red phone, red charger"));
+        productSearchIndex.productChanged(product(3L, "TV-3", "Blue phone"));
+
+        ProductSearchIndex.SearchResult searchResult = productSearchIndex.search("red PHONE", 0, 10);
+
+        assertThat(searchResult.getProductIds()).containsExactly(2L, 1L);
+        assertThat(searchResult.getTotalMatches()).isEqualTo(2);
+    }
+
+    @Test
+    public void search_whenQueryIsACodePrefix_shouldRankCodeMatchesFirst() {
+        productSearchIndex.productChanged(product(1L, "ab-100", "an abc description"));
+        productSearchIndex.productChanged(product(2L, "AB-200", "something else"));
+        productSearchIndex.productChanged(product(3L, "zz-300", "ab"));
+
+        ProductSearchIndex.SearchResult searchResult = productSearchIndex.search("ab", 0, 10);
+
+        assertThat(searchResult.getProductIds()).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    public void search_shouldPaginateTheRankedResults() {
+        for(long id = 1; id <= 5; id++){
+            productSearchIndex.productChanged(product(id, "code" + id, "lamp"));
+        }
+
+        ProductSearchIndex.SearchResult searchResult = productSearchIndex.search("lamp", 2, 2);
+
+        assertThat(searchResult.getProductIds()).containsExactly(3L, 4L);
+        assertThat(searchResult.getTotalMatches()).isEqualTo(5);
+        assertThat(productSearchIndex.search("lamp", Integer.MAX_VALUE, 2).getProductIds()).isEmpty();
+    }
+
+    @Test
+    public void productChangedAndRemoved_shouldUpdateTheIndex() {
+        productSearchIndex.productChanged(product(1L, "aCode", "old description"));
+        productSearchIndex.productChanged(product(1L, "aCode", "new description"));
+
+        assertThat(productSearchIndex.search("old", 0, 10).getProductIds()).isEmpty();
+        assertThat(productSearchIndex.search("new", 0, 10).getProductIds()).containsExactly(1L);
+
+        productSearchIndex.productRemoved(1L);
+
+        assertThat(productSearchIndex.search("new", 0, 10).getProductIds()).isEmpty();
+        assertThat(productSearchIndex.search("aCo", 0, 10).getProductIds()).isEmpty();
+    }
+
+    private Product product(long id, String code, String description) {
+        Product product = new Product();
+        product.setId(id);
+        product.setCode(code);
+        product.setDescription(description);
+        return product;
+    }
+}
@@ -6,6 +6,7 @@ import com.practice.onlineShop.exceptions.InvalidProductCodeException;
 import com.practice.onlineShop.mappers.ProductMapper;
 import com.practice.onlineShop.repositories.ProductRepository;
 import com.practice.onlineShop.vos.ProductVo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.mock.env.MockEnvironment;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.util.ArrayList;
@@ -22,6 +24,7 @@ import java.util.Optional;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.ThrowableAssert.catchThrowableOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -37,9 +40,15 @@ public class ProductServiceTest {
         @MockBean
         private ProductRepository productRepository;
 
+        @MockBean
+        private StockService stockService;
+
         @Bean
         public ProductService productService() {
-            return new ProductService(productMapper, productRepository);
+            return new ProductService(productMapper, productRepository, stockService,
+                    new ProductCache(new SimpleMeterRegistry(), false, 0, 0), new CatalogVersions(), new ProductSearchIndex(productRepository),
+                    new CurrencyConverter(new MockEnvironment().withProperty("shop.currency.rates.EUR", "1")
+                            .withProperty("shop.currency.rates.USD", "1.08").withProperty("shop.currency.rates.RON", "4.97")));
         }
     }
 
@@ -92,47 +101,36 @@ public class ProductServiceTest {
 
     @Test
     public void getProductWhenIsInDBShouldReturnIt() throws InvalidProductCodeException {
-        Product product = new Product();
-        product.setCode("aCode");
-        when(productRepository.findByCode(any())).thenReturn(Optional.of(product));
         ProductVo productVO = new ProductVo();
         productVO.setCode("aCode");
-        when(productMapper.toVO(any())).thenReturn(productVO);
+        when(productRepository.findVoByCode(any())).thenReturn(Optional.of(productVO));
         ProductVo returnedProduct = productService.getProduct("aCode");
 
         assertThat(returnedProduct.getCode()).isEqualTo("aCode");
 
-        verify(productRepository).findByCode("aCode");
-        verify(productMapper).toVO(product);
+        verify(productRepository).findVoByCode("aCode");
+        verify(productMapper, never()).toVO(any());
     }
 
     @Test
     public void getProducts(){
-        ArrayList<Product> products = new ArrayList<>();
-        Product productOne = new Product();
-        productOne.setCode("aCode");
-        products.add(productOne);
-        Product productTwo = new Product();
-        productTwo.setCode("aCode2");
-        products.add(productTwo);
-
+        ArrayList<ProductVo> products = new ArrayList<>();
         ProductVo productVO1 = new ProductVo();
         productVO1.setCode("aCode");
+        products.add(productVO1);
         ProductVo productVO2 = new ProductVo();
         productVO2.setCode("aCode2");
+        products.add(productVO2);
 
-        when(productRepository.findAll()).thenReturn(products);
-        when(productMapper.toVO(productOne)).thenReturn(productVO1);
-        when(productMapper.toVO(productTwo)).thenReturn(productVO2);
+        when(productRepository.findAllVos()).thenReturn(products);
 
         List<ProductVo> productsList = productService.getProducts();
 
         assertThat(productsList).hasSize(2);
         assertThat(productsList).containsOnly(productVO1, productVO2);
 
-        verify(productRepository).findAll();
-        verify(productMapper).toVO(productOne);
-        verify(productMapper).toVO(productTwo);
+        verify(productRepository).findAllVos();
+        verify(productRepository, never()).findAll();
     }
 
     @Test
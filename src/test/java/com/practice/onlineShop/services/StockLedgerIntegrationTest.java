@@ -0,0 +1,166 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.UtilsComponent;
+import com.practice.onlineShop.entities.Product;
+import com.practice.onlineShop.entities.StockMovement;
+import com.practice.onlineShop.exceptions.NotEnoughStockException;
+import com.practice.onlineShop.repositories.ProductRepository;
+import com.practice.onlineShop.repositories.StockMovementRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@SpringBootTest(properties = {"shop.stock.ledger.enabled=true", "shop.stock.ledger.flush-interval-ms=3600000"})
+class StockLedgerIntegrationTest {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockMovementRepository stockMovementRepository;
+
+    @Autowired
+    private UtilsComponent utilsComponent;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private CatalogVersions catalogVersions;
+
+    @Test
+    public void reserveStockShouldBeWrittenToTheProductTableOnFlush() {
+        Product product = saveProductWithStock("ledgerProductForFlush", 10);
+
+        transactionTemplate.execute(status -> reserve(product, 3));
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(10);
+
+        stockLedger.flush();
+
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(7);
+        assertThat(stockMovementRepository.count()).isZero();
+    }
+
+    @Test
+    public void reserveStockWhenTransactionRollsBackShouldReleaseTheReservation() {
+        Product product = saveProductWithStock("ledgerProductForRollback", 1);
+
+        transactionTemplate.execute(status -> {
+            reserve(product, 1);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        Throwable notEnoughStock = catchThrowable(() -> transactionTemplate.execute(status -> reserve(product, 2)));
+        assertThat(notEnoughStock).hasCauseInstanceOf(NotEnoughStockException.class);
+        Boolean reservedAfterRollback = transactionTemplate.execute(status -> reserve(product, 1));
+        assertThat(reservedAfterRollback).isTrue();
+    }
+
+    @Test
+    public void reserveStockWhenManyClientsCompeteShouldNeverOversell() throws InterruptedException {
+        Product product = saveProductWithStock("ledgerProductForFlashSale", 5);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successfulReservations = new AtomicInteger();
+
+        for(int i = 0; i < 40; i++){
+            executorService.submit(() -> {
+                start.await();
+                try {
+                    transactionTemplate.execute(status -> reserve(product, 1));
+                    successfulReservations.incrementAndGet();
+                } catch (RuntimeException notEnoughStock) {
+                    // asteptat dupa ce stocul s-a terminat
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executorService.shutdown();
+        executorService.awaitTermination(30, TimeUnit.SECONDS);
+        stockLedger.flush();
+
+        assertThat(successfulReservations.get()).isEqualTo(5);
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isZero();
+    }
+
+    @Test
+    public void setStockShouldNotBeReservableBeforeCommit() throws Exception {
+        Product product = saveProductWithStock("ledgerProductForSet", 1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        Throwable notEnoughStockBeforeCommit = transactionTemplate.execute(status -> {
+            stockService.setStock(product, 5);
+            try {
+                return executorService.submit(() -> catchThrowable(() -> transactionTemplate.execute(otherStatus -> reserve(product, 2)))).get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        executorService.shutdown();
+        assertThat(notEnoughStockBeforeCommit).hasCauseInstanceOf(NotEnoughStockException.class);
+
+        Boolean reservedAfterCommit = transactionTemplate.execute(status -> reserve(product, 5));
+        assertThat(reservedAfterCommit).isTrue();
+    }
+
+    @Test
+    public void reconcileAfterACrashShouldApplyTheJournalBeforeLoadingTheStock() {
+        Product product = saveProductWithStock("ledgerProductForReconcile", 10);
+        // o rezervare scrisa in stock_movement, dar neaplicata pe tabela product inainte de oprire
+        StockMovement movement = new StockMovement();
+        movement.setProductId(product.getId());
+        movement.setDelta(-4);
+        stockMovementRepository.save(movement);
+
+        StockLedger restartedLedger = new StockLedger(productRepository, stockMovementRepository, transactionTemplate, productCache, catalogVersions);
+        ReflectionTestUtils.setField(restartedLedger, "flushBatchSize", 1000);
+        restartedLedger.reconcile();
+
+        assertThat(productRepository.findById(product.getId()).get().getStock()).isEqualTo(6);
+        assertThat(stockMovementRepository.count()).isZero();
+        Boolean reservedOverTheStock = transactionTemplate.execute(status -> restartedLedger.tryReserve(product.getId(), 7));
+        assertThat(reservedOverTheStock).isFalse();
+        Boolean reservedTheWholeStock = transactionTemplate.execute(status -> restartedLedger.tryReserve(product.getId(), 6));
+        assertThat(reservedTheWholeStock).isTrue();
+    }
+
+    private Product saveProductWithStock(String code, int stock) {
+        Product product = utilsComponent.generateProduct(code);
+        product.setStock(stock);
+        return productRepository.save(product);
+    }
+
+    private Boolean reserve(Product product, int quantity) {
+        Map<Integer, Integer> productIdsToQuantity = Collections.singletonMap((int) product.getId(), quantity);
+        try {
+            stockService.reserveStock(productIdsToQuantity);
+        } catch (NotEnoughStockException e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+}
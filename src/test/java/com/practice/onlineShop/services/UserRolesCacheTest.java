@@ -0,0 +1,123 @@
+package com.practice.onlineShop.services;
+
+import com.practice.onlineShop.entities.User;
+import com.practice.onlineShop.enums.Roles;
+import com.practice.onlineShop.exceptions.InvalidCustomerIdException;
+import com.practice.onlineShop.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class UserRolesCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    public void getRoles_whenRolesAreCached_shouldNotReadTheUserAgain() throws Exception {
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, meterRegistry, true, 10, 60000);
+        when(userRepository.findWithRolesById(1L)).thenReturn(Optional.of(user(1L, Roles.ADMIN, Roles.EXPEDITOR)));
+
+        userRolesCache.getRoles(1L);
+        Set<Roles> roles = userRolesCache.getRoles(1L);
+
+        assertThat(roles).containsExactlyInAnyOrder(Roles.ADMIN, Roles.EXPEDITOR);
+        verify(userRepository, times(1)).findWithRolesById(1L);
+        assertThat(meterRegistry.get("shop.security.roles.cache.hits").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shop.security.roles.cache.misses").functionCounter().count()).isEqualTo(1);
+        assertThat(userRolesCache.getHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void getRoles_afterInvalidateOrTtl_shouldReadTheRolesAgain() throws Exception {
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, meterRegistry, true, 10, 60000);
+        when(userRepository.findWithRolesById(1L)).thenReturn(Optional.of(user(1L, Roles.CLIENT)), Optional.of(user(1L, Roles.ADMIN)));
+
+        assertThat(userRolesCache.getRoles(1L)).containsExactly(Roles.CLIENT);
+        userRolesCache.invalidate(1L);
+        assertThat(userRolesCache.getRoles(1L)).containsExactly(Roles.ADMIN);
+
+        UserRolesCache expiringCache = new UserRolesCache(userRepository, new SimpleMeterRegistry(), true, 10, -1);
+        when(userRepository.findWithRolesById(2L)).thenReturn(Optional.of(user(2L, Roles.CLIENT)));
+        expiringCache.getRoles(2L);
+        expiringCache.getRoles(2L);
+        verify(userRepository, times(2)).findWithRolesById(2L);
+    }
+
+    @Test
+    public void getRoles_whenAnotherUserIsInvalidatedDuringTheLoad_shouldStillCacheTheRoles() throws Exception {
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, meterRegistry, true, 10, 60000);
+        when(userRepository.findWithRolesById(1L)).thenAnswer(invocation -> {
+            userRolesCache.invalidate(2L);
+            return Optional.of(user(1L, Roles.CLIENT));
+        });
+        when(userRepository.findWithRolesById(3L)).thenAnswer(invocation -> {
+            userRolesCache.invalidate(3L);
+            return Optional.of(user(3L, Roles.CLIENT));
+        });
+
+        userRolesCache.getRoles(1L);
+        userRolesCache.getRoles(1L);
+        userRolesCache.getRoles(3L);
+        userRolesCache.getRoles(3L);
+
+        verify(userRepository, times(1)).findWithRolesById(1L);
+        verify(userRepository, times(2)).findWithRolesById(3L);
+    }
+
+    @Test
+    public void getRoles_whenUserDoesNotExist_shouldThrowAndNotCacheIt() {
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, meterRegistry, true, 10, 60000);
+        when(userRepository.findWithRolesById(anyLong())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> userRolesCache.getRoles(99L)).isInstanceOf(InvalidCustomerIdException.class);
+        assertThatThrownBy(() -> userRolesCache.getRoles((Long) null)).isInstanceOf(InvalidCustomerIdException.class);
+        assertThat(meterRegistry.get("shop.security.roles.cache.size").gauge().value()).isZero();
+    }
+
+    @Test
+    public void getRoles_forManyUsers_shouldReadOnlyTheMissingOnesInOneQuery() throws Exception {
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, meterRegistry, true, 10, 60000);
+        when(userRepository.findWithRolesById(1L)).thenReturn(Optional.of(user(1L, Roles.CLIENT)));
+        when(userRepository.findAllWithRolesByIdIn(any())).thenReturn(Collections.singletonList(user(2L, Roles.ADMIN)));
+        userRolesCache.getRoles(1L);
+
+        Map<Long, Set<Roles>> roles = userRolesCache.getRoles(Arrays.asList(1L, 2L));
+
+        assertThat(roles.get(1L)).containsExactly(Roles.CLIENT);
+        assertThat(roles.get(2L)).containsExactly(Roles.ADMIN);
+        verify(userRepository).findAllWithRolesByIdIn(Collections.singleton(2L));
+    }
+
+    @Test
+    public void getRoles_overMaxSize_shouldEvictTheOldestUser() throws Exception {
+        UserRolesCache userRolesCache = new UserRolesCache(userRepository, meterRegistry, true, 1, 60000);
+        when(userRepository.findWithRolesById(1L)).thenReturn(Optional.of(user(1L, Roles.CLIENT)));
+        when(userRepository.findWithRolesById(2L)).thenReturn(Optional.of(user(2L, Roles.CLIENT)));
+
+        userRolesCache.getRoles(1L);
+        userRolesCache.getRoles(2L);
+        userRolesCache.getRoles(1L);
+
+        verify(userRepository, times(2)).findWithRolesById(1L);
+        assertThat(meterRegistry.get("shop.security.roles.cache.evictions").counter().count()).isEqualTo(2);
+    }
+
+    private User user(long id, Roles... roles) {
+        User user = new User();
+        user.setId(id);
+        user.setRoles(Arrays.asList(roles));
+        return user;
+    }
+}